@@ -3,5 +3,5 @@ package bot;
 import sx.blah.discord.handle.impl.events.guild.channel.message.MessageReceivedEvent;
 
 public interface Command {
-	void runCommand(MessageReceivedEvent event, String args) throws CommandFailureException;
+	void runCommand(MessageReceivedEvent event, CommandTokens args) throws CommandFailureException;
 }
@@ -0,0 +1,243 @@
+package bot;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs commands off the event dispatcher's thread, so that one slow command
+ * can't hold up every other server.
+ *
+ * Every server (or private channel) gets its own first-in-first-out lane of
+ * waiting commands. The workers take one command from each lane that has
+ * anything waiting in turn, so a server that sends a burst of commands only
+ * delays itself, and everyone else's commands keep getting run at the same
+ * rate.
+ *
+ * Both the total number of waiting commands and the number waiting in any one
+ * lane are limited. Once either is full, {@link #submit(long, Runnable)}
+ * refuses the command straight away instead of letting the wait grow without
+ * bound, and the caller can tell the user to try again later.
+ *
+ * @see VirtualCommandRunner
+ */
+public class CommandExecutor implements CommandRunner {
+
+	/**
+	 * The number of worker threads used by default. Commands spend a lot of their
+	 * time waiting on Discord, so there are at least two, even on one core.
+	 */
+	public static final int DEFAULT_WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * The most commands that can be waiting at once by default.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * The most commands one server can have waiting at once by default.
+	 */
+	public static final int DEFAULT_LANE_CAPACITY = 16;
+
+	private final int capacity;
+	private final int laneCapacity;
+	private final Thread[] workers;
+
+	// Everything below is guarded by the lock.
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	// Only lanes with something waiting are kept, so this doesn't grow with the
+	// number of servers the bot has ever seen.
+	private final Map<Long, Lane> lanes = new HashMap<>();
+	// The lanes with something waiting, in the order they'll be served.
+	private final ArrayDeque<Lane> ready = new ArrayDeque<>();
+	private int waiting = 0;
+	private boolean shutdown = false;
+
+	public CommandExecutor() {
+		this(DEFAULT_WORKERS, DEFAULT_CAPACITY, DEFAULT_LANE_CAPACITY);
+	}
+
+	/**
+	 * @param workers
+	 *            The number of commands that can run at once.
+	 * @param capacity
+	 *            The most commands that can be waiting to run, in total.
+	 * @param laneCapacity
+	 *            The most commands that can be waiting to run for any one server.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If any of them is less than one.
+	 */
+	public CommandExecutor(int workers, int capacity, int laneCapacity) throws IllegalArgumentException {
+		if (workers < 1 || capacity < 1 || laneCapacity < 1) {
+			throw new IllegalArgumentException(
+					"The number of workers and the capacities must be at least one. Otherwise nothing could ever run.");
+		}
+		this.capacity = capacity;
+		this.laneCapacity = Math.min(laneCapacity, capacity);
+		this.workers = new Thread[workers];
+		for (int i = 0; i < workers; i++) {
+			Thread worker = new Thread(this::work, "command-" + (i + 1));
+			worker.setDaemon(true);
+			this.workers[i] = worker;
+			worker.start();
+		}
+	}
+
+	/**
+	 * Queues a command to be run by one of the workers. Commands with the same key
+	 * are started in the order they were submitted, and take turns with every
+	 * other key. Any exceptions that escape a command are printed, and the worker
+	 * carries on.
+	 */
+	@Override
+	public boolean submit(long key, Runnable command) {
+		lock.lock();
+		try {
+			if (shutdown || waiting >= capacity) {
+				return false;
+			}
+			Lane lane = lanes.get(key);
+			if (lane == null) {
+				lane = new Lane(key);
+				lanes.put(key, lane);
+				ready.addLast(lane);
+			} else if (lane.commands.size() >= laneCapacity) {
+				return false;
+			}
+			lane.commands.addLast(command);
+			waiting++;
+			notEmpty.signal();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops accepting commands. The workers finish whatever is already waiting,
+	 * and then stop.
+	 */
+	@Override
+	public void shutdown() {
+		lock.lock();
+		try {
+			shutdown = true;
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits up to the timeout for every worker to stop, after a
+	 * {@link #shutdown()}.
+	 *
+	 * @return true if they all stopped.
+	 */
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Thread worker : workers) {
+			final long remaining = deadline - System.nanoTime();
+			if (remaining > 0) {
+				TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+			}
+			if (worker.isAlive()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The number of commands waiting to be started.
+	 */
+	public int getWaiting() {
+		lock.lock();
+		try {
+			return waiting;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getWorkers() {
+		return workers.length;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getLaneCapacity() {
+		return laneCapacity;
+	}
+
+	/**
+	 * The next command to run, taken from the lane whose turn it is, or null once
+	 * the executor is shut down and nothing is left.
+	 */
+	private Runnable take() throws InterruptedException {
+		lock.lock();
+		try {
+			while (ready.isEmpty()) {
+				if (shutdown) {
+					return null;
+				}
+				notEmpty.await();
+			}
+			final Lane lane = ready.pollFirst();
+			final Runnable command = lane.commands.pollFirst();
+			if (lane.commands.isEmpty()) {
+				lanes.remove(lane.key);
+			} else {
+				// Back of the line, behind every other server that's waiting.
+				ready.addLast(lane);
+			}
+			waiting--;
+			return command;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void work() {
+		while (true) {
+			Runnable command;
+			try {
+				command = take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (command == null) {
+				return;
+			}
+			try {
+				command.run();
+			} catch (Throwable e) {
+				// Even an Error, like a stack overflow, only loses that one command.
+				// Nothing would replace this worker if it died.
+				System.out.println("\n\n");
+				e.printStackTrace(System.out);
+			}
+		}
+	}
+
+	/**
+	 * The commands waiting for one server.
+	 */
+	private static class Lane {
+		private final long key;
+		private final ArrayDeque<Runnable> commands = new ArrayDeque<>();
+
+		Lane(long key) {
+			this.key = key;
+		}
+	}
+
+}
@@ -13,8 +13,23 @@ import java.util.*;
 @SuppressWarnings("unused")
 public class CommandHandler {
 
-	// Contains every command that can be called
-	private static Map<String, Command> commandMap = new HashMap<>();
+	// Contains every command that can be called. Filled in once, below, and never
+	// changed after that.
+	private static final CommandRegistry commands;
+
+	static final String BUSY_MESSAGE = "I'm working on too many commands right now. Please try again in a moment.";
+
+	// Runs the commands, so that the event dispatcher is free to take the next
+	// message straight away.
+	private final CommandRunner runner;
+
+	public CommandHandler() {
+		this(new CommandExecutor());
+	}
+
+	public CommandHandler(CommandRunner runner) {
+		this.runner = runner;
+	}
 
 	@EventSubscriber
 	public void onMessageReceived(MessageReceivedEvent event) {
@@ -22,46 +37,53 @@ public class CommandHandler {
 		if (event.getAuthor().isBot() == true) {
 			return;
 		}
-		// Don't process messages that aren't commands.
-		String message = event.getMessage().getContent().trim();
-		if (!message.startsWith(BotUtils.BOT_PREFIX) || message == null) {
+		// Don't process messages that aren't commands. Most messages aren't, and can
+		// be turned away by their first character or two.
+		String message = event.getMessage().getContent();
+		if (!commands.couldBeCommand(message)) {
 			return;
 		}
 
-		// Process the command.
-
-		// Splits up the line after every space.
-		String[] messageSplit = message.split(" ");
-
-		// Strip the bot prefix off the 0th entry, leaving
-		// only the command name in the 0th element of the array.
-		String commandStr = messageSplit[0].substring(BotUtils.BOT_PREFIX.length()).toLowerCase().trim();
-
-		// Combine the rest back together. Note that this does trim some extra spaces.
-		String argStr = "";
-		for (int i = 1; i < messageSplit.length; i++) {
-			argStr += " " + messageSplit[i].trim();
+		// Split the message into the command name and its arguments, in one pass.
+		CommandTokens tokens = CommandTokenizer.tokenize(message, commands.getPrefix());
+		if (tokens == null) {
+			return;
 		}
-		argStr.trim();
-
-		// Run the command specified, and alert the user if there's an error.
-		if (commandMap.containsKey(commandStr)) {
-			try {
-				System.out.println("Command entered: " + commandStr);
-				commandMap.get(commandStr).runCommand(event, argStr);
-			} catch (CommandFailureException e) {
-				// Prints message to user in discord if they caused the issue.
-				BotUtils.sendMessage(event.getChannel(), e.getMessage());
-			} catch (Exception e) {
-				// If there's a legitimate bug or something,
-				// print it to command line instead. No need to tell the
-				// user if there's nothing they can do about it.
-				System.out.println("\n\n");
-				e.printStackTrace(System.out);
+
+		// Queue the command specified. If too many are already waiting, say so
+		// rather than make the user wait indefinitely.
+		Command command = commands.find(tokens.getName());
+		if (command != null) {
+			System.out.println("Command entered: " + tokens.getName());
+			if (!runner.submit(laneKey(event), () -> runCommand(command, event, tokens))) {
+				BotUtils.sendMessage(event.getChannel(), BUSY_MESSAGE);
 			}
+		}
 
+	}
+
+	// Run the command, and alert the user if there's an error.
+	static void runCommand(Command command, MessageReceivedEvent event, CommandTokens args) {
+		try {
+			command.runCommand(event, args);
+		} catch (CommandFailureException e) {
+			// Prints message to user in discord if they caused the issue.
+			BotUtils.sendMessage(event.getChannel(), e.getMessage());
+		} catch (Exception e) {
+			// If there's a legitimate bug or something,
+			// print it to command line instead. No need to tell the
+			// user if there's nothing they can do about it.
+			System.out.println("\n\n");
+			e.printStackTrace(System.out);
 		}
+	}
 
+	// Commands take turns by server. Private channels don't have one, so each is
+	// its own lane. IDs are unique across servers and channels, so they can't
+	// collide.
+	static long laneKey(MessageReceivedEvent event) {
+		IGuild guild = event.getGuild();
+		return guild != null ? guild.getLongID() : event.getChannel().getLongID();
 	}
 
 	public static boolean isHelpCommand(String args) {
@@ -73,14 +95,16 @@ public class CommandHandler {
 	// Registers all the commands.
 	static {
 
-		// NOTE: Argument strings are what they user typed in, but split on
-		// spaces, trimmed, and concatenated back together with spaces between.
-		// The end result of this is that every token is separated by
-		// exactly one space.
+		// NOTE: Arguments are the message after the command name, already split
+		// into groups and numbers by CommandTokenizer. The text itself, trimmed,
+		// is there too for commands that take a name or some other free text.
 
 		System.out.println("Loading Command map.");
 
-		// Initialize the command map with all commands
+		// Initialize the command map with all commands. Each command is added once,
+		// with every name it goes by and its help, if it has one. Every name with
+		// "help" on the end finds the help.
+		CommandRegistry.Builder builder = new CommandRegistry.Builder(BotUtils.BOT_PREFIX);
 		
 		Command listCommands = (event, args) -> {
 			BotUtils.sendMessage(event.getChannel(), ""
@@ -91,6 +115,8 @@ public class CommandHandler {
 					+ "```"
 					+ "**" + BotUtils.BOT_PREFIX + "prob** *Calculates the probability that you'll draw the combination of cards that you want.*\n"
 					+ "**" + BotUtils.BOT_PREFIX + "probonmulltox** *Given that you're willing to mulligan down to x cards in hand, this command calculates the cumulative probability that you'll draw the combination of cards that you want.*\n"
+					+ "**" + BotUtils.BOT_PREFIX + "drawcurve** *Calculates the probability that you'll have drawn the combination of cards that you want by each turn, on the play and on the draw.*\n"
+					+ "**" + BotUtils.BOT_PREFIX + "mullcompare** *Compares the Vancouver, Paris, and London mulligans, with and without a free mulligan, for every number of cards you're willing to mulligan down to.*\n"
 					+ ""
 					+ ""
 					+ "```"
@@ -116,95 +142,67 @@ public class CommandHandler {
 					);
 		};
 		
-			commandMap.put("commandlist", listCommands);
-			commandMap.put("listcommands", listCommands);
-			
-		
+		builder.add(listCommands, "commandlist", "listcommands");
 
 		//***********************//
 		//  Statistics Commands  //
 		//***********************//
 		
 		// Group Help
-		commandMap.put("gh", HyperGeoCommands.groupHelp);
-		commandMap.put("grouphelp", HyperGeoCommands.groupHelp);
+		builder.add(HyperGeoCommands.groupHelp, "gh", "grouphelp");
 		
 		// Prob
-		commandMap.put("p", HyperGeoCommands.prob);
-		commandMap.put("phelp", HyperGeoCommands.probHelp);
-		
-		commandMap.put("prob", HyperGeoCommands.prob);
-		commandMap.put("probhelp", HyperGeoCommands.probHelp);
-
-		commandMap.put("probability", HyperGeoCommands.prob);
-		commandMap.put("probabilityhelp", HyperGeoCommands.probHelp);
+		builder.add(HyperGeoCommands.prob, HyperGeoCommands.probHelp, "p", "prob", "probability");
 		
 		// Prob on mull to X
-		commandMap.put("pom", HyperGeoCommands.probOnMullToX);
-		commandMap.put("pomhelp", HyperGeoCommands.probOnMullToXHelp);
-		
-		commandMap.put("probmull", HyperGeoCommands.probOnMullToX);
-		commandMap.put("probmullhelp", HyperGeoCommands.probOnMullToXHelp);
-		
-		commandMap.put("probonmull", HyperGeoCommands.probOnMullToX);
-		commandMap.put("probonmullhelp", HyperGeoCommands.probOnMullToXHelp);
+		builder.add(HyperGeoCommands.probOnMullToX, HyperGeoCommands.probOnMullToXHelp, "pom", "probmull",
+				"probonmull", "probonmulltox", "probabilityonmull", "probabilityonmulltox");
 		
-		commandMap.put("probonmulltox", HyperGeoCommands.probOnMullToX);
-		commandMap.put("probonmulltoxhelp", HyperGeoCommands.probOnMullToXHelp);
+		// Mulligan comparison
+		builder.add(HyperGeoCommands.mullCompare, HyperGeoCommands.mullCompareHelp, "mc", "mullcompare");
 		
-		commandMap.put("probabilityonmull", HyperGeoCommands.probOnMullToX);
-		commandMap.put("probabilityonmullhelp", HyperGeoCommands.probOnMullToXHelp);
-		
-		commandMap.put("probabilityonmulltox", HyperGeoCommands.probOnMullToX);
-		commandMap.put("probabilityonmulltoxhelp", HyperGeoCommands.probOnMullToXHelp);
+		// Draw curve
+		builder.add(HyperGeoCommands.drawCurve, HyperGeoCommands.drawCurveHelp, "dc", "drawcurve");
 		
 		// ***********************//
 		// Graph Commands         //
 		// ***********************//
 
 		// Prob Chart (Normal Distribution Graph)
-		commandMap.put("pc", GraphCommands.probChart);
-		commandMap.put("pchelp", GraphCommands.probChartHelp);
-		
-		commandMap.put("probchart", GraphCommands.probChart);
-		commandMap.put("probcharthelp", GraphCommands.probChartHelp);
+		builder.add(GraphCommands.probChart, GraphCommands.probChartHelp, "pc", "probchart");
 		
 		// Group Pie Chart
-		commandMap.put("gpc", GraphCommands.groupPieChart);
-		commandMap.put("gpchelp", GraphCommands.groupPieChartHelp);
-		
-		commandMap.put("grouppiechart", GraphCommands.groupPieChart);
-		commandMap.put("grouppiecharthelp", GraphCommands.groupPieChartHelp);
+		builder.add(GraphCommands.groupPieChart, GraphCommands.groupPieChartHelp, "gpc", "grouppiechart");
 		
 		// ***********************//
 		// Misc. Commands         //
 		// ***********************//
 
-		commandMap.put("snowflake", (event, args) -> {
-			if (args == "") {
+		builder.add((event, args) -> {
+			if (args.getText().isEmpty()) {
 				BotUtils.sendMessage(event.getChannel(), BotUtils.codeBlock(event.getAuthor().getStringID()));
 			}
-			args = args.trim();
 			IGuild g = event.getGuild();
-			List<IUser> userList = g.getUsersByName(args.trim(), true);
+			List<IUser> userList = g.getUsersByName(args.getText(), true);
 			for (IUser u : userList) {
 				BotUtils.sendMessage(event.getChannel(), "Snowflake ID for " + u.getDisplayName(g) + ": " + BotUtils.codeBlock(u.getStringID()));
 			}
 			
-		});
+		}, "snowflake");
 
-		commandMap.put("profile", (event, args) -> {
-			if (args == "") {
+		builder.add((event, args) -> {
+			if (args.getText().isEmpty()) {
 				BotUtils.sendMessage(event.getChannel(), "User avatar for: " + event.getAuthor().getDisplayName(event.getGuild()) + ":\n" + event.getAuthor().getAvatarURL());
 				return;
 			}
 			IGuild g = event.getGuild();
-			List<IUser> userList = g.getUsersByName(args.trim(), true);
+			List<IUser> userList = g.getUsersByName(args.getText(), true);
 			for (IUser u : userList) {
 				BotUtils.sendMessage(event.getChannel(), "User avatar for: " + u.getDisplayName(g) + "\n" + u.getAvatarURL());
 			}
-		});
+		}, "profile");
 
+		commands = builder.build();
 		System.out.println("Done loading commands.");
 	}
 
@@ -0,0 +1,208 @@
+package bot;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Every command the bot answers to, looked up by name. Made with a
+ * {@link Builder}, and never changed afterwards, so it can be read from any
+ * thread without locking.
+ *
+ * A command is registered once, with all of its names and its help command.
+ * Asking for any name with "help" on the end finds the help command, so
+ * "/probhelp" and "/phelp" both work without being registered separately.
+ *
+ * Most messages in a busy server aren't commands at all.
+ * {@link #couldBeCommand(String)} turns those away by looking at their first
+ * couple of characters, before anything is allocated.
+ */
+public class CommandRegistry {
+
+	/**
+	 * What's added to a command's name to ask for its help instead.
+	 */
+	public static final String HELP_SUFFIX = "help";
+
+	private final String prefix;
+	private final Map<String, Entry> entries;
+	// Whether any name starts with each character, for the ones below 128.
+	// Anything else is checked against the names themselves.
+	private final boolean[] firstCharacters = new boolean[128];
+	private final boolean anyOtherFirstCharacter;
+
+	private CommandRegistry(String prefix, Map<String, Entry> entries) {
+		this.prefix = prefix;
+		this.entries = Collections.unmodifiableMap(new HashMap<>(entries));
+		boolean other = false;
+		for (String name : this.entries.keySet()) {
+			final char first = name.charAt(0);
+			if (first < firstCharacters.length) {
+				firstCharacters[first] = true;
+			} else {
+				other = true;
+			}
+		}
+		this.anyOtherFirstCharacter = other;
+	}
+
+	/**
+	 * Whether the message might be one of these commands. It has to start with the
+	 * prefix, possibly after some whitespace, followed by the first letter of some
+	 * command's name. If this is false, it definitely isn't a command. Nothing is
+	 * allocated either way.
+	 */
+	public boolean couldBeCommand(String message) {
+		if (message == null) {
+			return false;
+		}
+		final int length = message.length();
+		int start = 0;
+		while (start < length && Character.isWhitespace(message.charAt(start))) {
+			start++;
+		}
+		if (!message.startsWith(prefix, start)) {
+			return false;
+		}
+		final int first = start + prefix.length();
+		if (first == length) {
+			return false;
+		}
+		final char c = Character.toLowerCase(message.charAt(first));
+		return c < firstCharacters.length ? firstCharacters[c] : anyOtherFirstCharacter;
+	}
+
+	/**
+	 * The command with this name, or if the name is another command's name with
+	 * "help" on the end, that command's help.
+	 *
+	 * @param name
+	 *            The name, in lower case, without the prefix.
+	 *
+	 * @return The command, or null if there isn't one by that name.
+	 */
+	public Command find(String name) {
+		final Entry entry = entries.get(name);
+		if (entry != null) {
+			return entry.command;
+		}
+		if (name.length() > HELP_SUFFIX.length() && name.endsWith(HELP_SUFFIX)) {
+			final Entry base = entries.get(name.substring(0, name.length() - HELP_SUFFIX.length()));
+			if (base != null) {
+				return base.help;
+			}
+		}
+		return null;
+	}
+
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * Every name a command was registered under, not counting the help names.
+	 */
+	public Set<String> getNames() {
+		return entries.keySet();
+	}
+
+	/**
+	 * A command and its help, which is null if it doesn't have one.
+	 */
+	private static class Entry {
+		private final Command command;
+		private final Command help;
+
+		Entry(Command command, Command help) {
+			this.command = command;
+			this.help = help;
+		}
+	}
+
+	/**
+	 * Collects the commands for a {@link CommandRegistry}.
+	 */
+	public static class Builder {
+
+		private final String prefix;
+		private final Map<String, Entry> entries = new HashMap<>();
+
+		/**
+		 * @param prefix
+		 *            What every command starts with.
+		 *
+		 * @throws IllegalArgumentException
+		 *             If the prefix is empty.
+		 */
+		public Builder(String prefix) throws IllegalArgumentException {
+			if (prefix.isEmpty()) {
+				throw new IllegalArgumentException("The command prefix can't be empty.");
+			}
+			this.prefix = prefix;
+		}
+
+		/**
+		 * Registers a command with no help.
+		 *
+		 * @see #add(Command, Command, String...)
+		 */
+		public Builder add(Command command, String... names) throws IllegalArgumentException {
+			return add(command, null, names);
+		}
+
+		/**
+		 * Registers a command under each of its names. Each name with "help" on the
+		 * end will find the help command.
+		 *
+		 * @param command
+		 *            The command.
+		 * @param help
+		 *            Explains how to use the command, or null if there's nothing to
+		 *            explain.
+		 * @param names
+		 *            Every name the command goes by, in lower case.
+		 *
+		 * @throws IllegalArgumentException
+		 *             If there are no names, or any name is empty, isn't in lower
+		 *             case, contains whitespace, or is already taken.
+		 */
+		public Builder add(Command command, Command help, String... names) throws IllegalArgumentException {
+			if (names.length == 0) {
+				throw new IllegalArgumentException("A command needs at least one name.");
+			}
+			final Entry entry = new Entry(command, help);
+			for (String name : names) {
+				verifyName(name);
+				if (entries.containsKey(name)) {
+					throw new IllegalArgumentException("The command name \"" + name + "\" is already taken.");
+				}
+				entries.put(name, entry);
+			}
+			return this;
+		}
+
+		/**
+		 * The registry. The builder can still be used afterwards, without affecting
+		 * it.
+		 */
+		public CommandRegistry build() {
+			return new CommandRegistry(prefix, entries);
+		}
+
+		private static void verifyName(String name) throws IllegalArgumentException {
+			if (name.isEmpty()) {
+				throw new IllegalArgumentException("Command names can't be empty.");
+			}
+			for (int i = 0; i < name.length(); i++) {
+				final char c = name.charAt(i);
+				if (Character.isWhitespace(c) || Character.toLowerCase(c) != c) {
+					throw new IllegalArgumentException("The command name \"" + name
+							+ "\" must be in lower case, with no spaces. Names are matched after being lower cased.");
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,40 @@
+package bot;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the commands {@link CommandHandler} receives, somewhere other than the
+ * event dispatcher's thread.
+ *
+ * @see CommandExecutor
+ * @see VirtualCommandRunner
+ */
+public interface CommandRunner {
+
+	/**
+	 * Queues a command to be run.
+	 *
+	 * @param key
+	 *            Identifies whose command this is, usually the server's ID.
+	 * @param command
+	 *            The command. It should handle its own exceptions.
+	 *
+	 * @return false if the command was refused, because too many commands are
+	 *         already waiting, or the runner has been shut down.
+	 */
+	boolean submit(long key, Runnable command);
+
+	/**
+	 * Stops accepting commands. Whatever was already accepted still runs.
+	 */
+	void shutdown();
+
+	/**
+	 * Waits up to the timeout for every accepted command to finish, after a
+	 * {@link #shutdown()}.
+	 *
+	 * @return true if they all finished.
+	 */
+	boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+
+}
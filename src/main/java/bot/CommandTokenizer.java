@@ -0,0 +1,368 @@
+package bot;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Splits a message into a command name and its arguments, in one pass over the
+ * message, without regular expressions or any strings in between. See
+ * {@link CommandTokens} for what comes out.
+ *
+ * Nothing here throws because of what the user typed. The first problem found
+ * is recorded in the tokens, along with where in the message it was, and the
+ * command decides what to tell the user.
+ */
+public class CommandTokenizer {
+
+	// What readNumber() found.
+	private static final int NOT_A_NUMBER = 0;
+	private static final int NUMBER = 1;
+	private static final int TOO_LARGE = 2;
+
+	// Fields in a group, the name and K, k1, and k2.
+	private static final int MAX_GROUP_FIELDS = CommandTokens.MAX_GROUP_VALUES + 1;
+
+	private final String message;
+	// The arguments are message[pos, end).
+	private final int end;
+	private int pos;
+
+	private int groupCount = 0;
+	private String[] groupNames = new String[4];
+	private int[] groupValueCounts = new int[4];
+	private int[] groupValues = new int[4 * CommandTokens.MAX_GROUP_VALUES];
+	private int[] groupPositions = new int[4];
+
+	private int numberCount = 0;
+	private int[] numbers = new int[8];
+	private int[] numberPositions = new int[8];
+
+	// The fields of the group being read, and the number readNumber() just read.
+	private final int[] fields = new int[MAX_GROUP_FIELDS];
+	private int value;
+
+	private int errorPosition = -1;
+	private String errorMessage = null;
+
+	private CommandTokenizer(String message, int start, int end) {
+		this.message = message;
+		this.pos = start;
+		this.end = end;
+	}
+
+	/**
+	 * Splits up the message, if it's a command.
+	 *
+	 * @param message
+	 *            The message, exactly as it was received.
+	 * @param prefix
+	 *            What every command starts with.
+	 *
+	 * @return The command's tokens, or null if the message isn't a command. Not
+	 *         being a command is decided before anything is allocated.
+	 */
+	public static CommandTokens tokenize(String message, String prefix) {
+		if (message == null) {
+			return null;
+		}
+		final int length = message.length();
+		int start = 0;
+		while (start < length && Character.isWhitespace(message.charAt(start))) {
+			start++;
+		}
+		if (!message.startsWith(prefix, start)) {
+			return null;
+		}
+
+		final int nameStart = start + prefix.length();
+		int nameEnd = nameStart;
+		while (nameEnd < length && !Character.isWhitespace(message.charAt(nameEnd))) {
+			nameEnd++;
+		}
+		if (nameEnd == nameStart) {
+			return null;
+		}
+
+		int argsStart = nameEnd;
+		while (argsStart < length && Character.isWhitespace(message.charAt(argsStart))) {
+			argsStart++;
+		}
+		int argsEnd = length;
+		while (argsEnd > argsStart && Character.isWhitespace(message.charAt(argsEnd - 1))) {
+			argsEnd--;
+		}
+
+		CommandTokenizer tokenizer = new CommandTokenizer(message, argsStart, argsEnd);
+		tokenizer.readArguments();
+		return new CommandTokens(message, message.substring(nameStart, nameEnd).toLowerCase(Locale.ROOT),
+				message.substring(argsStart, argsEnd), tokenizer.groupCount, tokenizer.groupNames,
+				tokenizer.groupValueCounts, tokenizer.groupValues, tokenizer.groupPositions, tokenizer.numberCount,
+				tokenizer.numbers, tokenizer.numberPositions, tokenizer.errorPosition, tokenizer.errorMessage);
+	}
+
+	/********************************/
+	/* Grammar                      */
+	/********************************/
+
+	/**
+	 * arguments := [item ("," item)*], where item := group | number, and every
+	 * group comes before every number.
+	 */
+	private void readArguments() {
+		if (pos == end) {
+			return;
+		}
+		while (true) {
+			skipWhitespace();
+			final int start = pos;
+			if (pos == end) {
+				fail(start, "Expected a number or a group after the last comma, but found nothing.");
+				return;
+			}
+			if (message.charAt(pos) == '(') {
+				if (numberCount > 0) {
+					fail(start, "The groups must all come before any numbers.");
+					return;
+				}
+				if (!readGroup()) {
+					return;
+				}
+			} else {
+				final int status = readNumber();
+				if (status == NOT_A_NUMBER || !atTokenEnd()) {
+					fail(start, expected("a number or a group", start));
+					return;
+				}
+				if (status == TOO_LARGE) {
+					fail(start, "The number \"" + word(start) + "\" is too large.");
+					return;
+				}
+				addNumber(value, start);
+			}
+
+			skipWhitespace();
+			if (pos == end) {
+				return;
+			}
+			if (message.charAt(pos) != ',') {
+				fail(pos, expected("a comma", pos));
+				return;
+			}
+			pos++;
+		}
+	}
+
+	/**
+	 * group := "(" [name ","] K ["," k1 "," k2] ")"
+	 *
+	 * Whether the first field is a name is decided by how many fields there are,
+	 * two or four, so that a name can look like a number.
+	 *
+	 * @return false if there was an error.
+	 */
+	private boolean readGroup() {
+		final int groupStart = pos;
+		// Skip the parenthesis.
+		pos++;
+
+		int fieldCount = 0;
+		boolean firstIsNumber = false;
+		int firstStart = 0, firstEnd = 0;
+		while (true) {
+			skipWhitespace();
+			final int start = pos;
+			if (fieldCount == MAX_GROUP_FIELDS) {
+				fail(groupStart, groupSpecification());
+				return false;
+			}
+
+			final int status = readNumber();
+			boolean isNumber = status != NOT_A_NUMBER && atTokenEnd();
+			if (isNumber && fieldCount == 0) {
+				// A name can start with a number, like "2 Drops". It's only a number if
+				// the field ends right after it.
+				final int after = pos;
+				skipWhitespace();
+				isNumber = pos == end || message.charAt(pos) == ',' || message.charAt(pos) == ')';
+				pos = after;
+			}
+			if (isNumber && status == TOO_LARGE) {
+				fail(start, "The number \"" + word(start) + "\" is too large.");
+				return false;
+			}
+			if (isNumber) {
+				fields[fieldCount] = value;
+			} else if (fieldCount == 0) {
+				// Maybe a name. Take everything up to the end of the field.
+				pos = start;
+				while (pos < end && !isDelimiter(message.charAt(pos))) {
+					pos++;
+				}
+				if (pos < end && message.charAt(pos) == '(') {
+					fail(pos, "Groups can't be inside other groups.");
+					return false;
+				}
+			} else {
+				fail(start, expected("an integer", start));
+				return false;
+			}
+			if (fieldCount == 0) {
+				firstIsNumber = isNumber;
+				firstStart = start;
+				firstEnd = pos;
+				while (firstEnd > firstStart && Character.isWhitespace(message.charAt(firstEnd - 1))) {
+					firstEnd--;
+				}
+				if (firstEnd == firstStart) {
+					fail(start, expected("a number or a name", start));
+					return false;
+				}
+			}
+			fieldCount++;
+
+			skipWhitespace();
+			if (pos == end) {
+				fail(groupStart, "This group is missing its closing parenthesis.");
+				return false;
+			}
+			final char c = message.charAt(pos);
+			pos++;
+			if (c == ')') {
+				break;
+			}
+			if (c != ',') {
+				fail(pos - 1, expected("a comma or a closing parenthesis", pos - 1));
+				return false;
+			}
+		}
+
+		final boolean named = fieldCount == 2 || fieldCount == 4;
+		if (!named && !firstIsNumber) {
+			fail(firstStart, expected("an integer", firstStart));
+			return false;
+		}
+		final int first = named ? 1 : 0;
+		addGroup(named ? message.substring(firstStart, firstEnd) : null, first, fieldCount - first, groupStart);
+		return true;
+	}
+
+	/**
+	 * number := ["+" | "-"] digit+
+	 *
+	 * On success, leaves the number in value and pos just after it. Otherwise
+	 * doesn't move.
+	 */
+	private int readNumber() {
+		final int start = pos;
+		boolean negative = false;
+		if (pos < end && (message.charAt(pos) == '-' || message.charAt(pos) == '+')) {
+			negative = message.charAt(pos) == '-';
+			pos++;
+		}
+		final int digits = pos;
+		long magnitude = 0;
+		boolean tooLarge = false;
+		while (pos < end) {
+			final char c = message.charAt(pos);
+			if (c < '0' || c > '9') {
+				break;
+			}
+			magnitude = magnitude * 10 + (c - '0');
+			if (magnitude > Integer.MAX_VALUE) {
+				// Keep going to find the end of the number, without overflowing.
+				tooLarge = true;
+				magnitude = Integer.MAX_VALUE;
+			}
+			pos++;
+		}
+		if (pos == digits) {
+			pos = start;
+			return NOT_A_NUMBER;
+		}
+		if (tooLarge) {
+			return TOO_LARGE;
+		}
+		value = (int) (negative ? -magnitude : magnitude);
+		return NUMBER;
+	}
+
+	/********************************/
+	/* Helper Functions             */
+	/********************************/
+
+	private void skipWhitespace() {
+		while (pos < end && Character.isWhitespace(message.charAt(pos))) {
+			pos++;
+		}
+	}
+
+	/**
+	 * Whether pos is at the end of a token, so that a number just read isn't the
+	 * start of a word like "2drops".
+	 */
+	private boolean atTokenEnd() {
+		return pos == end || isDelimiter(message.charAt(pos)) || Character.isWhitespace(message.charAt(pos));
+	}
+
+	private static boolean isDelimiter(char c) {
+		return c == ',' || c == '(' || c == ')';
+	}
+
+	/**
+	 * The token starting at start, for error messages.
+	 */
+	private String word(int start) {
+		if (start < end && isDelimiter(message.charAt(start))) {
+			return message.substring(start, start + 1);
+		}
+		int wordEnd = start;
+		while (wordEnd < end && !isDelimiter(message.charAt(wordEnd))) {
+			wordEnd++;
+		}
+		return message.substring(start, wordEnd).trim();
+	}
+
+	private String expected(String what, int start) {
+		final String got = word(start);
+		if (got.isEmpty()) {
+			return "Expected " + what + ", but found nothing.";
+		}
+		return "Expected " + what + ", but got \"" + got + "\".";
+	}
+
+	private static String groupSpecification() {
+		return "This group needs to follow one of the specifications for defining a group. For information on defining groups, please type "
+				+ BotUtils.BOT_PREFIX + "grouphelp or " + BotUtils.BOT_PREFIX + "gh.";
+	}
+
+	private void fail(int position, String error) {
+		errorPosition = position;
+		errorMessage = error;
+	}
+
+	private void addGroup(String name, int firstField, int valueCount, int position) {
+		if (groupCount == groupNames.length) {
+			final int capacity = groupCount * 2;
+			groupNames = Arrays.copyOf(groupNames, capacity);
+			groupValueCounts = Arrays.copyOf(groupValueCounts, capacity);
+			groupValues = Arrays.copyOf(groupValues, capacity * CommandTokens.MAX_GROUP_VALUES);
+			groupPositions = Arrays.copyOf(groupPositions, capacity);
+		}
+		groupNames[groupCount] = name;
+		groupValueCounts[groupCount] = valueCount;
+		System.arraycopy(fields, firstField, groupValues, groupCount * CommandTokens.MAX_GROUP_VALUES, valueCount);
+		groupPositions[groupCount] = position;
+		groupCount++;
+	}
+
+	private void addNumber(int number, int position) {
+		if (numberCount == numbers.length) {
+			numbers = Arrays.copyOf(numbers, numberCount * 2);
+			numberPositions = Arrays.copyOf(numberPositions, numberCount * 2);
+		}
+		numbers[numberCount] = number;
+		numberPositions[numberCount] = position;
+		numberCount++;
+	}
+
+}
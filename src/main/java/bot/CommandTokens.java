@@ -0,0 +1,200 @@
+package bot;
+
+/**
+ * A message split into a command name and its arguments by
+ * {@link CommandTokenizer}.
+ *
+ * The arguments are kept in two forms. {@link #getText()} is everything after
+ * the name, as typed, for commands that take free text. The rest is the same
+ * text read as the groups and numbers the statistics commands use, like
+ * "(Lands, 24, 2, 4), (36), 7", stored in primitive arrays.
+ *
+ * A group is written as (K), (name, K), (K, k1, k2), or (name, K, k1, k2). Its
+ * numbers are stored in that order, without the name. The groups all come
+ * first, and any plain numbers after them.
+ *
+ * If the arguments can't be read that way, {@link #hasError()} is true, and
+ * {@link #getErrorPosition()} says where the problem was. Commands that only
+ * use the text can ignore it.
+ */
+public class CommandTokens {
+
+	/**
+	 * The most numbers a group can have, K, k1, and k2.
+	 */
+	public static final int MAX_GROUP_VALUES = 3;
+
+	private final String message;
+	private final String name;
+	private final String text;
+
+	private final int groupCount;
+	private final String[] groupNames;
+	private final int[] groupValueCounts;
+	// MAX_GROUP_VALUES entries for each group.
+	private final int[] groupValues;
+	private final int[] groupPositions;
+
+	private final int numberCount;
+	private final int[] numbers;
+	private final int[] numberPositions;
+
+	private final int errorPosition;
+	private final String errorMessage;
+
+	CommandTokens(String message, String name, String text, int groupCount, String[] groupNames,
+			int[] groupValueCounts, int[] groupValues, int[] groupPositions, int numberCount, int[] numbers,
+			int[] numberPositions, int errorPosition, String errorMessage) {
+		this.message = message;
+		this.name = name;
+		this.text = text;
+		this.groupCount = groupCount;
+		this.groupNames = groupNames;
+		this.groupValueCounts = groupValueCounts;
+		this.groupValues = groupValues;
+		this.groupPositions = groupPositions;
+		this.numberCount = numberCount;
+		this.numbers = numbers;
+		this.numberPositions = numberPositions;
+		this.errorPosition = errorPosition;
+		this.errorMessage = errorMessage;
+	}
+
+	/********************************/
+	/* Command and Text             */
+	/********************************/
+
+	/**
+	 * The whole message, as it was received.
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * The command's name, in lower case, without the prefix.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Everything after the command's name, without the whitespace around it.
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * Whether the arguments just ask for help, like "/prob help".
+	 */
+	public boolean isHelp() {
+		return CommandHandler.isHelpCommand(text);
+	}
+
+	/********************************/
+	/* Groups and Numbers           */
+	/********************************/
+
+	public int getGroupCount() {
+		return groupCount;
+	}
+
+	/**
+	 * The group's name, or null if it wasn't given one.
+	 */
+	public String getGroupName(int group) {
+		return groupNames[group];
+	}
+
+	/**
+	 * The number of numbers in the group, either one (K) or three (K, k1, k2).
+	 */
+	public int getGroupValueCount(int group) {
+		return groupValueCounts[group];
+	}
+
+	/**
+	 * The group's index-th number, after the name if it has one.
+	 */
+	public int getGroupValue(int group, int index) {
+		return groupValues[group * MAX_GROUP_VALUES + index];
+	}
+
+	/**
+	 * Where the group's opening parenthesis is in the message.
+	 */
+	public int getGroupPosition(int group) {
+		return groupPositions[group];
+	}
+
+	/**
+	 * The number of plain numbers, after any groups.
+	 */
+	public int getNumberCount() {
+		return numberCount;
+	}
+
+	public int getNumber(int index) {
+		return numbers[index];
+	}
+
+	/**
+	 * Where the number starts in the message.
+	 */
+	public int getNumberPosition(int index) {
+		return numberPositions[index];
+	}
+
+	/********************************/
+	/* Errors                       */
+	/********************************/
+
+	/**
+	 * Whether the arguments couldn't be read as groups and numbers. If so, only the
+	 * groups and numbers before the error are here.
+	 */
+	public boolean hasError() {
+		return errorPosition >= 0;
+	}
+
+	/**
+	 * Where the problem is in the message, counting from zero, or -1 if there
+	 * isn't one.
+	 */
+	public int getErrorPosition() {
+		return errorPosition;
+	}
+
+	/**
+	 * What the problem is, or null if there isn't one.
+	 */
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	/**
+	 * The error, followed by the line of the message it's on with a marker under
+	 * the spot, ready to send to the user. Null if there isn't an error.
+	 */
+	public String describeError() {
+		if (!hasError()) {
+			return null;
+		}
+		int lineStart = message.lastIndexOf('\n', errorPosition - 1) + 1;
+		int lineEnd = message.indexOf('\n', errorPosition);
+		if (lineEnd < 0) {
+			lineEnd = message.length();
+		}
+		StringBuilder marker = new StringBuilder();
+		for (int i = lineStart; i < errorPosition; i++) {
+			// Keep tabs, so the marker lines up however wide they're shown.
+			marker.append(message.charAt(i) == '\t' ? '\t' : ' ');
+		}
+		marker.append('^');
+		// The line starts on a new line, so Discord can't mistake it for the name of a
+		// language to highlight.
+		return errorMessage + "\n" + BotUtils.codeBlock("\n" + message.substring(lineStart, lineEnd) + "\n" + marker);
+	}
+
+}
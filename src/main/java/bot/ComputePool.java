@@ -0,0 +1,172 @@
+package bot;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small pool of ordinary threads for the parts of commands that keep a core
+ * busy, the statistics and the chart rendering.
+ *
+ * When commands run on virtual threads (see {@link VirtualCommandRunner}),
+ * thousands of them can be in progress at once. That's fine while they're
+ * waiting, but if they all calculated at once, they'd tie up the few threads
+ * that virtual threads run on, and nothing else could get a turn.
+ * {@link #compute(Computation)} hands the work to this pool instead, which has
+ * one thread per core, and the virtual thread just waits for the answer.
+ *
+ * On any other thread, such as a {@link CommandExecutor} worker, there are
+ * already only a few commands running at once, so the work just runs where it
+ * is, and this pool is never even started.
+ */
+public class ComputePool {
+
+	/**
+	 * Protected Constructor for static method class
+	 */
+	protected ComputePool() {
+	}
+
+	/**
+	 * The number of threads, one per core.
+	 */
+	public static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+	// Thread.isVirtual(), or null before Java 21.
+	private static final Method IS_VIRTUAL = findIsVirtual();
+
+	private static ExecutorService pool = null;
+
+	/**
+	 * Some work that might fail because of what the user asked for.
+	 */
+	@FunctionalInterface
+	public interface Computation<T> {
+		T compute() throws CommandFailureException;
+	}
+
+	/**
+	 * Runs the computation on this pool if called from a virtual thread, or right
+	 * here otherwise, and returns its result. Anything it throws is thrown from
+	 * here, just as if it had been run directly.
+	 */
+	public static <T> T compute(Computation<T> computation) throws CommandFailureException {
+		if (!isVirtualThread()) {
+			return computation.compute();
+		}
+		Future<T> future = getPool().submit(computation::compute);
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new CommandFailureException("The command was cancelled before it could finish.");
+		} catch (ExecutionException e) {
+			throw rethrow(e.getCause());
+		}
+	}
+
+	/**
+	 * Where {@link #compute(Computation)} would run something: this pool if called
+	 * from a virtual thread, or right here otherwise. This is for work that's
+	 * started somewhere else, like a
+	 * {@link statistics.hypergeo.HyperGeoCache HyperGeoCache} miss, and waited for
+	 * with {@link #await(CompletableFuture)}.
+	 */
+	public static Executor executor() {
+		if (!isVirtualThread()) {
+			return Runnable::run;
+		}
+		return getPool();
+	}
+
+	/**
+	 * Waits for a result from {@link #executor()} on the calling thread, not on
+	 * one of the pool's, and throws whatever it failed with, just like
+	 * {@link #compute(Computation)}.
+	 *
+	 * The future might be shared with other commands, so it's never cancelled. If
+	 * this thread is interrupted, it just stops waiting.
+	 */
+	public static <T> T await(CompletableFuture<T> future) throws CommandFailureException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CommandFailureException("The command was cancelled before it could finish.");
+		} catch (ExecutionException e) {
+			throw rethrow(e.getCause());
+		}
+	}
+
+	// Throws the cause of a failed computation as itself, if it can be.
+	private static CommandFailureException rethrow(Throwable cause) throws CommandFailureException {
+		if (cause instanceof CommandFailureException) {
+			throw (CommandFailureException) cause;
+		}
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		throw new IllegalStateException(cause);
+	}
+
+	/**
+	 * Stops the pool once any running work completes, and waits up to the timeout
+	 * for that to happen. Anything submitted afterwards starts a new pool.
+	 *
+	 * @return true if the pool is no longer running anything.
+	 */
+	public static boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		ExecutorService old;
+		synchronized (ComputePool.class) {
+			old = pool;
+			pool = null;
+		}
+		if (old == null) {
+			return true;
+		}
+		old.shutdown();
+		return old.awaitTermination(timeout, unit);
+	}
+
+	private static boolean isVirtualThread() {
+		if (IS_VIRTUAL == null) {
+			return false;
+		}
+		try {
+			return (Boolean) IS_VIRTUAL.invoke(Thread.currentThread());
+		} catch (ReflectiveOperationException e) {
+			return false;
+		}
+	}
+
+	private static synchronized ExecutorService getPool() {
+		if (pool == null) {
+			final AtomicInteger threadCount = new AtomicInteger();
+			pool = Executors.newFixedThreadPool(THREADS, r -> {
+				Thread thread = new Thread(r, "compute-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return pool;
+	}
+
+	private static Method findIsVirtual() {
+		try {
+			return Thread.class.getMethod("isVirtual");
+		} catch (NoSuchMethodException | SecurityException e) {
+			return null;
+		}
+	}
+
+}
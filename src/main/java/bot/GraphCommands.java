@@ -2,24 +2,29 @@ package bot;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
 import java.util.Objects;
 
 import charts.normaldistributionchart.NormalDistributionChart;
 import charts.normaldistributionchart.NormalDistributionData;
 import charts.piechart.PieChart;
 import charts.piechart.PieData;
-import statistics.hypergeo.Group;
+import statistics.hypergeo.DistributionSummary;
+import statistics.hypergeo.GroupSet;
 import statistics.hypergeo.MultiHyperGeo;
 import statistics.hypergeo.UniHyperGeo;
 import statistics.hypergeo.data.HyperGeoData;
 import statistics.hypergeo.data.MultivariateData;
 import statistics.hypergeo.data.UnivariateData;
+import sx.blah.discord.handle.impl.events.guild.channel.message.MessageReceivedEvent;
 
 public class GraphCommands {
 	
 	private static String chartSavePath = System.getProperty("user.dir") + File.separator;
 
+	// The charts being drawn right now, so that identical requests that arrive
+	// together share one picture instead of each drawing their own.
+	private static final SingleFlight<QueryKey, SharedFile> charts = new SingleFlight<>(SharedFile::share);
+
 	public static Command probChartHelp = (event, args) -> {
 		BotUtils.sendMessage(event.getChannel(), ""
 				+ "This command creates a pie chart, with each group having a size equal to "
@@ -51,20 +56,12 @@ public class GraphCommands {
 
 	// Creates a pie chart with the expected number of successes from a sample of size n.
 	public static Command probChart = (event, args) -> {
-		if (CommandHandler.isHelpCommand(args)) {
+		if (args.isHelp()) {
 			probChartHelp.runCommand(event, args);
 			return;
 		}
 
-		// Collisions could still happen between two asynchronous calls of this method,
-		// but become very, very unlikely.
-		// We could check to see if the file exists already, but that would take
-		// precious I/O time..
-		final String chartFileName = ((Integer) Objects.hash(event, args, System.currentTimeMillis())).toString()
-				+ ".png";
-		NormalDistributionChart chart = new NormalDistributionChart();
-
-		final boolean useMultivariate = args.trim().matches(HyperGeoCommands.MULTIVARIATE_DECISION_REGEX);
+		final boolean useMultivariate = HyperGeoCommands.isMultivariate(args);
 
 		HyperGeoData data = null;
 		if (useMultivariate) {
@@ -73,14 +70,38 @@ public class GraphCommands {
 			data = HyperGeoCommands.parseUnivariate(args);
 		}
 
-		// Fill chart with mean of each group
+		// Everyone asking for the same chart at once gets the same picture. Only the
+		// names, the group sizes and n show up in it, so the ranges aren't part of
+		// the key.
+		final QueryKey key;
 		if (useMultivariate) {
 			MultivariateData mvd = (MultivariateData) data;
-			List<Group> glist = mvd.getGlist();
-			int n = mvd.getN();
-			for (Group g : glist) {
-				chart.addData(new NormalDistributionData(g.getName(), MultiHyperGeo.mean(glist, g, n),
-						MultiHyperGeo.standardDeviation(glist, g, n)));
+			key = new QueryKey("probchart", groupNames(mvd.getGroups()), groupSizes(mvd.getGroups(), mvd.getN()));
+		} else {
+			UnivariateData uvd = (UnivariateData) data;
+			key = new QueryKey("probchart univariate", null, uvd.getN(), uvd.getK(), uvd.getn());
+		}
+		final HyperGeoData query = data;
+		SharedFile chartFile = charts.run(key, () -> drawProbChart(query, chartFileName(key)));
+		sendChart(event, chartFile);
+	};
+
+	private static SharedFile drawProbChart(HyperGeoData data, String chartFileName) throws CommandFailureException {
+		NormalDistributionChart chart = new NormalDistributionChart();
+
+		// Fill chart with mean of each group
+		if (data instanceof MultivariateData) {
+			MultivariateData mvd = (MultivariateData) data;
+			DistributionSummary summary = ComputePool.compute(() -> {
+				try {
+					return MultiHyperGeo.summary(mvd.getGroups(), mvd.getN());
+				} catch (IllegalArgumentException e) {
+					throw new CommandFailureException(e.getMessage());
+				}
+			});
+			for (int i = 0; i < summary.size(); i++) {
+				chart.addData(new NormalDistributionData(summary.getName(i), summary.getMean(i),
+						summary.getStandardDeviation(i)));
 			}
 		} else {
 			UnivariateData uvd = (UnivariateData) data;
@@ -92,21 +113,22 @@ public class GraphCommands {
 		}
 
 		File chartFile = new File(chartSavePath + chartFileName);
-		try {
-			chart.setAllowRangeBelowZero(false);
-			chart.setXLabel("Relative Frequency");
-			chart.setYLabel("Number of cards");
-			chart.createChart(chartFile, "Group Graph", "(Graph of Expected Frequency in Sample)");
-		} catch (IOException e) {
-			e.printStackTrace();
-			throw new CommandFailureException(
-					"Something went wrong, and the chart requested could not be created/saved.");
-		}
-
-		BotUtils.verifyFile(chartFile);
-		BotUtils.sendFile(event.getChannel(), chartFile);
-		chartFile.delete();
-	};
+		chart.setAllowRangeBelowZero(false);
+		chart.setXLabel("Relative Frequency");
+		chart.setYLabel("Number of cards");
+		// Rendering is the slowest part of the command.
+		ComputePool.compute(() -> {
+			try {
+				chart.createChart(chartFile, "Group Graph", "(Graph of Expected Frequency in Sample)");
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new CommandFailureException(
+						"Something went wrong, and the chart requested could not be created/saved.");
+			}
+			return chartFile;
+		});
+		return new SharedFile(chartFile);
+	}
 
 	public static Command groupPieChartHelp = (event, args) -> {
 		BotUtils.sendMessage(event.getChannel(), ""
@@ -137,21 +159,12 @@ public class GraphCommands {
 	};
 
 	public static Command groupPieChart = (event, args) -> {
-		if (CommandHandler.isHelpCommand(args)) {
+		if (args.isHelp()) {
 			probChartHelp.runCommand(event, args);
 			return;
 		}
 
-		// Collisions could still technically happen between two asynchronous calls of
-		// this method, but become very, very unlikely. So unlikely in fact that it's
-		// better to think of it as impossible.
-		// We could check to see if the file exists already to make sure, but that would
-		// take precious I/O time.
-		final String chartFileName = ((Integer) Objects.hash(event, args, System.currentTimeMillis())).toString()
-				+ ".png";
-		PieChart chart = new PieChart();
-
-		final boolean useMultivariate = args.trim().matches(HyperGeoCommands.MULTIVARIATE_DECISION_REGEX);
+		final boolean useMultivariate = HyperGeoCommands.isMultivariate(args);
 
 		HyperGeoData data = null;
 		if (useMultivariate) {
@@ -160,14 +173,29 @@ public class GraphCommands {
 			data = HyperGeoCommands.parseUnivariate(args);
 		}
 
-		// Fill chart with data
+		// Only the names and sizes of the groups show up in a pie chart.
+		final QueryKey key;
 		if (useMultivariate) {
-			MultivariateData mvd = (MultivariateData) data;
-			List<Group> glist = mvd.getGlist();
-			for (int i = 0; i < glist.size(); i++) {
-				Group g = glist.get(i);
-				String name = g.getName();
-				chart.addData(new PieData(name, g.getK()));
+			GroupSet groups = ((MultivariateData) data).getGroups();
+			key = new QueryKey("grouppiechart", groupNames(groups), groupSizes(groups));
+		} else {
+			UnivariateData uvd = (UnivariateData) data;
+			key = new QueryKey("grouppiechart univariate", null, uvd.getN(), uvd.getK());
+		}
+		final HyperGeoData query = data;
+		SharedFile chartFile = charts.run(key, () -> drawGroupPieChart(query, chartFileName(key)));
+		sendChart(event, chartFile);
+	};
+
+	private static SharedFile drawGroupPieChart(HyperGeoData data, String chartFileName)
+			throws CommandFailureException {
+		PieChart chart = new PieChart();
+
+		// Fill chart with data
+		if (data instanceof MultivariateData) {
+			GroupSet groups = ((MultivariateData) data).getGroups();
+			for (int i = 0; i < groups.size(); i++) {
+				chart.addData(new PieData(groups.getName(i), groups.getK(i)));
 			}
 		} else {
 			UnivariateData uvd = (UnivariateData) data;
@@ -177,16 +205,58 @@ public class GraphCommands {
 		}
 
 		File chartFile = new File(chartSavePath + chartFileName);
-		try {
-			chart.createChart(chartFile, "Group Pie Chart", "(Graph of Expected Frequency in Sample)");
-		} catch (IOException e) {
-			e.printStackTrace();
-			throw new CommandFailureException(
-					"Something went wrong, and the chart requested could not be created/saved.");
+		ComputePool.compute(() -> {
+			try {
+				chart.createChart(chartFile, "Group Pie Chart", "(Graph of Expected Frequency in Sample)");
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new CommandFailureException(
+						"Something went wrong, and the chart requested could not be created/saved.");
+			}
+			return chartFile;
+		});
+		return new SharedFile(chartFile);
+	}
+
+	/********************************/
+	/* Helper Functions             */
+	/********************************/
+
+	// Collisions could still technically happen between two charts drawn in the
+	// same millisecond, but become very, very unlikely. Identical requests at the
+	// same time share one chart, so they never collide.
+	// We could check to see if the file exists already to make sure, but that would
+	// take precious I/O time.
+	private static String chartFileName(QueryKey key) {
+		return ((Integer) Objects.hash(key, System.currentTimeMillis())).toString() + ".png";
+	}
+
+	private static String[] groupNames(GroupSet groups) {
+		String[] names = new String[groups.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = groups.getName(i);
 		}
+		return names;
+	}
 
-		BotUtils.verifyFile(chartFile);
-		BotUtils.sendFile(event.getChannel(), chartFile);
-		chartFile.delete();
-	};
+	// The size of each group, followed by any extra values.
+	private static int[] groupSizes(GroupSet groups, int... extra) {
+		int[] sizes = new int[groups.size() + extra.length];
+		for (int i = 0; i < groups.size(); i++) {
+			sizes[i] = groups.getK(i);
+		}
+		System.arraycopy(extra, 0, sizes, groups.size(), extra.length);
+		return sizes;
+	}
+
+	// Sends a chart that might be shared with other requests, and lets go of it.
+	// The last one to finish deletes it.
+	private static void sendChart(MessageReceivedEvent event, SharedFile chartFile) throws CommandFailureException {
+		try {
+			BotUtils.verifyFile(chartFile.getFile());
+			BotUtils.sendFile(event.getChannel(), chartFile.getFile());
+		} finally {
+			chartFile.release();
+		}
+	}
 }
@@ -1,10 +1,11 @@
 package bot;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
-import statistics.hypergeo.Group;
+import statistics.hypergeo.GroupSet;
+import statistics.hypergeo.HyperGeoCache;
+import statistics.hypergeo.MulliganRule;
+import statistics.hypergeo.MulliganTable;
 import statistics.hypergeo.MultiHyperGeo;
 import statistics.hypergeo.UniHyperGeo;
 import statistics.hypergeo.data.HyperGeoData;
@@ -15,137 +16,53 @@ public class HyperGeoCommands {
 	
 	static final int DEFAULT_HAND_SIZE = 7;
 	
-	static final String MULTIVARIATE_DECISION_REGEX = "\\(.*\\)\\w*,.*";
+	static final int DEFAULT_TURNS = 10;
+	static final int MAX_TURNS = 40;
 	
-	static List<Group> parseGroupList(List<String> groups) throws CommandFailureException {
-		List<Group> glist = new ArrayList<>();
-		int groupIndex = 0;
-		for (String g : groups) {
-			String[] arguments = g.split(",");
-			for (int i = 0; i < arguments.length; i++) {
-				arguments[i] = arguments[i].replace(")", "").trim();
-			}
-			
+	// Throws the tokenizer's error, if there was one, showing the user where it is.
+	static void verifySyntax(CommandTokens args) throws CommandFailureException {
+		if (args.hasError()) {
+			throw new CommandFailureException(args.describeError());
+		}
+	}
+	
+	// The multivariate form of every command starts with a group, and the univariate form is only numbers.
+	static boolean isMultivariate(CommandTokens args) {
+		return args.getGroupCount() > 0;
+	}
+	
+	static GroupSet parseGroups(CommandTokens args) throws CommandFailureException {
+		return parseGroups(args, false);
+	}
+	
+	// With openEnded, an omitted k2 is the whole group rather than the hand size, for commands like /drawcurve whose
+	// samples grow past seven cards. Otherwise "(Other Cards, 36)" would quietly turn into at most seven of them.
+	public static GroupSet parseGroups(CommandTokens args, boolean openEnded) throws CommandFailureException {
+		final int size = args.getGroupCount();
+		String[] names = new String[size];
+		int[] K = new int[size], k1 = new int[size], k2 = new int[size];
+		for (int i = 0; i < size; i++) {
 			// These are the default values for when the argument is omitted. However, K should always be set.
-			String name = "Group #" + (groupIndex + 1);
-			int K = 0, k1 = 0, k2 = DEFAULT_HAND_SIZE;
-			
-			if (arguments.length == 1) {// (K),
-				try {
-					K = Integer.parseInt(arguments[0]);
-				} catch (NumberFormatException e) {
-					throw new CommandFailureException("Expected an integer, but got \"" + arguments[0] + "\".");
-				}
-			} else if (arguments.length == 2) {// (name, K), 
-				name = arguments[0];
-				try {
-					K = Integer.parseInt(arguments[1]);
-				} catch (NumberFormatException e) {
-					throw new CommandFailureException("Expected an integer, but got \"" + arguments[1] + "\".");
-				}
-			} else if (arguments.length == 3) {// (K, k1, k2),
-				try {
-					K = Integer.parseInt(arguments[0]);
-				} catch (NumberFormatException e) {
-					throw new CommandFailureException("Expected an integer, but got \"" + arguments[0] + "\".");
-				}
-				try {
-					k1 = Integer.parseInt(arguments[1]);
-				} catch (NumberFormatException e) {
-					throw new CommandFailureException("Expected an integer, but got \"" + arguments[1] + "\".");
-				}
-				try {
-					k2 = Integer.parseInt(arguments[2]);
-				} catch (NumberFormatException e) {
-					throw new CommandFailureException("Expected an integer, but got \"" + arguments[2] + "\".");
-				}
-			} else if (arguments.length == 4) {// (name, K, k1, k2),
-				name = arguments[0];
-				try {
-					K = Integer.parseInt(arguments[1]);
-				} catch (NumberFormatException e) {
-					throw new CommandFailureException("Expected an integer, but got \"" + arguments[1] + "\".");
-				}
-				try {
-					k1 = Integer.parseInt(arguments[2]);
-				} catch (NumberFormatException e) {
-					throw new CommandFailureException("Expected an integer, but got \"" + arguments[2] + "\".");
-				}
-				try {
-					k2 = Integer.parseInt(arguments[3]);
-				} catch (NumberFormatException e) {
-					throw new CommandFailureException("Expected an integer, but got \"" + arguments[3] + "\".");
-				}
-			} else {
-				throw new CommandFailureException(BotUtils.codeBlock(""
-						+ "The group (" + g + ") needs to follow one of the specifications for defining a group.\n"
-						+ "For information on defining groups, please type " + BotUtils.BOT_PREFIX + "grouphelp or " + BotUtils.BOT_PREFIX + "gh."
-						+ "For additional information on how to use the command you just entered, please retype it, but with only |help| for arguments. Ex: /p help\n"
-						));
+			names[i] = args.getGroupName(i) != null ? args.getGroupName(i) : "Group #" + (i + 1);
+			K[i] = args.getGroupValue(i, 0);
+			k1[i] = 0;
+			k2[i] = openEnded ? K[i] : DEFAULT_HAND_SIZE;
+			if (args.getGroupValueCount(i) == 3) {// (K, k1, k2) or (name, K, k1, k2)
+				k1[i] = args.getGroupValue(i, 1);
+				k2[i] = args.getGroupValue(i, 2);
 			}
-			glist.add(new Group(name, K, k1, k2));
 		}
-		return glist;
+		try {
+			return new GroupSet(names, K, k1, k2);
+		} catch (IllegalArgumentException e) {
+			throw new CommandFailureException(e.getMessage());
+		}
 	}
 	
-	static UnivariateData parseUnivariate(String args) throws CommandFailureException {
-		String[] arguments = args.split(",");
-		for (int i = 0; i < arguments.length; i++) {
-			arguments[i] = arguments[i].trim();
-		}
-					
-		if (arguments.length == 4) {
-			int N = 0, K = 0, k = 0, n = DEFAULT_HAND_SIZE;
-			try {
-				N = Integer.parseInt(arguments[0]);
-			} catch (NumberFormatException e) {
-				throw new CommandFailureException("Expected an integer, but got \"" + arguments[0] + "\".");
-			}
-			try {
-				K = Integer.parseInt(arguments[1]);
-			} catch (NumberFormatException e) {
-				throw new CommandFailureException("Expected an integer, but got \"" + arguments[1] + "\".");
-			}
-			try {
-				k = Integer.parseInt(arguments[2]);
-			} catch (NumberFormatException e) {
-				throw new CommandFailureException("Expected an integer, but got \"" + arguments[2] + "\".");
-			}
-			try {
-				n = Integer.parseInt(arguments[3]);
-			} catch (NumberFormatException e) {
-				throw new CommandFailureException("Expected an integer, but got \"" + arguments[3] + "\".");
-			}
-			return new UnivariateData(N, K, k, n);
-		} else if (arguments.length == 5) {
-			int N = 0, K = 0, k1 = 0, k2 = 0, n = DEFAULT_HAND_SIZE;
-			try {
-				N = Integer.parseInt(arguments[0]);
-			} catch (NumberFormatException e) {
-				throw new CommandFailureException("Expected an integer, but got \"" + arguments[0] + "\".");
-			}
-			try {
-				K = Integer.parseInt(arguments[1]);
-			} catch (NumberFormatException e) {
-				throw new CommandFailureException("Expected an integer, but got \"" + arguments[1] + "\".");
-			}
-			try {
-				k1 = Integer.parseInt(arguments[2]);
-			} catch (NumberFormatException e) {
-				throw new CommandFailureException("Expected an integer, but got \"" + arguments[2] + "\".");
-						}
-			try {
-				k2 = Integer.parseInt(arguments[3]);
-			} catch (NumberFormatException e) {
-				throw new CommandFailureException("Expected an integer, but got \"" + arguments[3] + "\".");
-			}
-			try {
-				n = Integer.parseInt(arguments[4]);
-			} catch (NumberFormatException e) {
-			throw new CommandFailureException("Expected an integer, but got \"" + arguments[4] + "\".");
-			}
-			return new UnivariateData(N, K, k1, k2, n);
-		} else {
+	static UnivariateData parseUnivariate(CommandTokens args) throws CommandFailureException {
+		verifySyntax(args);
+		final int count = args.getNumberCount();
+		if (isMultivariate(args) || (count != 4 && count != 5)) {
 			throw new CommandFailureException(""
 					+ "```"
 					+ "For the syntax of the univariate form of command, use one of the following:\n"
@@ -153,50 +70,39 @@ public class HyperGeoCommands {
 					+ "/prob N, K, k1, k2, n"
 					+ "```");
 		}
+		if (count == 4) {
+			return new UnivariateData(args.getNumber(0), args.getNumber(1), args.getNumber(2), args.getNumber(3));
+		}
+		return new UnivariateData(args.getNumber(0), args.getNumber(1), args.getNumber(2), args.getNumber(3), args.getNumber(4));
 	}
 	
-	static MultivariateData parseMultivariate(String args) throws CommandFailureException {
-		args = args.replaceAll("\\(", "");
-		
-		// The last index will be n
-		String[] groupsAndn = args.split("\\)\\w*,");
-		
-		int n = HyperGeoCommands.DEFAULT_HAND_SIZE;
-		
-		// See if the last index in the array is a group or not. If it isn't, then we assume that 
-		// they tried to define an n, and we should attempt to parse it.
-		boolean nIsPresent = !groupsAndn[groupsAndn.length - 1].contains(",");
-		if (nIsPresent) {
-			try {
-				// Since we matched (.*),.* there must be at least one split, so the array is at least of length two, 
-				// and this should never access out of bounds. If they did not specify a value for n, or the index
-				// contains some garbage values, this should throw a NumberFormatException. It does so when it sees
-				// a parenthesis or non-number character, and it does so when it sees the empty string too.
-				n = Integer.parseInt(groupsAndn[groupsAndn.length - 1].trim());
-			} catch (NumberFormatException e) {
-				throw new CommandFailureException(""
-						+ "Expected some integer value n, but got \"" + groupsAndn[groupsAndn.length - 1].trim() + "\" instead.\n"
-						+ "```"
-						+ "For the syntax of the multivariate form of this command, use one of the following:\n"
-						+ BotUtils.BOT_PREFIX + "*commandName* (name, K, k1, k2), ..., (name, K, k1, k2), n\n"
-						+ BotUtils.BOT_PREFIX + "*commandName* (name, K, k1, k2), ..., (name, K, k1, k2)\n"
-						+ BotUtils.BOT_PREFIX + "*commandName* (K, k1, k2), ..., (K, k1, k2), n\n"
-						+ BotUtils.BOT_PREFIX + "*commandName* (K, k1, k2), ..., (K, k1, k2)\n"
-						+ "```");
-			}
-		}
-		
-		// For ease of access
-		List<String> groups = new ArrayList<>(Arrays.asList(groupsAndn));
-		// If we've got n, so take off the n so that only the real groups remain
-		if (nIsPresent) {
-			groups.remove(groups.size() - 1);	
-		}
-		
-		List<Group> glist = HyperGeoCommands.parseGroupList(groups);
-		return new MultivariateData(glist, n);
+	static MultivariateData parseMultivariate(CommandTokens args) throws CommandFailureException {
+		return parseMultivariate(args, DEFAULT_HAND_SIZE);
 	}
 	
+	// The number after the groups is optional, and defaultN is used if it's left off.
+	static MultivariateData parseMultivariate(CommandTokens args, int defaultN) throws CommandFailureException {
+		return parseMultivariate(args, defaultN, false);
+	}
+	
+	// See parseGroups(CommandTokens, boolean) for openEnded.
+	static MultivariateData parseMultivariate(CommandTokens args, int defaultN, boolean openEnded) throws CommandFailureException {
+		verifySyntax(args);
+		if (!isMultivariate(args) || args.getNumberCount() > 1) {
+			throw new CommandFailureException(""
+					+ "Expected a list of groups, followed by at most one number.\n"
+					+ "```"
+					+ "For the syntax of the multivariate form of this command, use one of the following:\n"
+					+ BotUtils.BOT_PREFIX + "*commandName* (name, K, k1, k2), ..., (name, K, k1, k2), n\n"
+					+ BotUtils.BOT_PREFIX + "*commandName* (name, K, k1, k2), ..., (name, K, k1, k2)\n"
+					+ BotUtils.BOT_PREFIX + "*commandName* (K, k1, k2), ..., (K, k1, k2), n\n"
+					+ BotUtils.BOT_PREFIX + "*commandName* (K, k1, k2), ..., (K, k1, k2)\n"
+					+ "```");
+		}
+		final int n = args.getNumberCount() == 1 ? args.getNumber(0) : defaultN;
+		return new MultivariateData(parseGroups(args, openEnded), n);
+	}
+
 	public static Command groupHelp = (event, args) -> {
 		BotUtils.sendMessage(event.getChannel(), ""
 				+ "```"
@@ -266,7 +172,7 @@ public class HyperGeoCommands {
 	};
 	
 	public static Command prob = (event, args) -> {
-		if (CommandHandler.isHelpCommand(args)) {
+		if (args.isHelp()) {
 			probHelp.runCommand(event, args);
 			return;
 		}
@@ -274,7 +180,7 @@ public class HyperGeoCommands {
 		HyperGeoData data = null;
 		
 		boolean useMultivariate;
-		useMultivariate = args.trim().matches(MULTIVARIATE_DECISION_REGEX);
+		useMultivariate = isMultivariate(args);
 		if (useMultivariate) {
 			data = parseMultivariate(args);
 		}
@@ -284,19 +190,22 @@ public class HyperGeoCommands {
 		
 		Double ans = null;
 		try {
-			// If there's less than 7 groups, the singlethreaded version will probably be faster.
+			// The same few decks get asked about over and over, so answers are cached.
+			// MultiHyperGeo decides for itself whether the query is big enough to multithread.
+			// Identical queries that arrive together share one calculation, and only that
+			// calculation takes up a compute thread. Everyone else waits right here.
+			CompletableFuture<Double> probability;
 			if (useMultivariate) {
 				MultivariateData mvd = (MultivariateData)data;
-				ans = MultiHyperGeo.probability(mvd.getGlist(), mvd.getN(), mvd.getGlist().size() >= 7);
+				probability = HyperGeoCache.getDefault().probabilityAsync(mvd.getGroups(), mvd.getN(), ComputePool.executor());
 			}
 			else {
 				UnivariateData uvd = (UnivariateData)data;
-				ans = UniHyperGeo.probability(uvd.getN(), uvd.getK(), uvd.getn(), uvd.getk1(), uvd.getk2()); 
+				probability = HyperGeoCache.getDefault().probabilityAsync(uvd.getN(), uvd.getK(), uvd.getn(), uvd.getk1(), uvd.getk2(), ComputePool.executor()); 
 			}
+			ans = ComputePool.await(probability);
 		} catch (IllegalArgumentException e) {
 			throw new CommandFailureException(e.getMessage());
-		} catch (org.apache.commons.math3.exception.MathArithmeticException e) {
-			throw new CommandFailureException("Something went wrong. Please use smaller arguments.");
 		}
 		
 		BotUtils.sendMessage(event.getChannel(), BotUtils.formatPercent(ans));
@@ -331,17 +240,17 @@ public class HyperGeoCommands {
 	
 	public static Command probOnMullToX = (event, args) -> {
 
-		if (CommandHandler.isHelpCommand(args)) {
+		if (args.isHelp()) {
 			probOnMullToXHelp.runCommand(event, args);
 			return;
 		}
 		
-		// Unlike with /prob, if the group structure doesn't exist we should just throw an
-		// exception right away. It exists for both Univariate and Multivariate, but it's 
-		// difficult to adapt both for Discord. The reason is the variable number of arguments, 
-		// and our inability to tell them apart.
-		if (!args.trim().matches("\\(.*\\)\\w*,.*")) {
-			throw new IllegalArgumentException(""
+		// Unlike with /prob, X isn't optional, and there's no univariate form. The reason
+		// is the variable number of arguments, and our inability to tell them apart.
+		verifySyntax(args);
+		if (!isMultivariate(args) || args.getNumberCount() != 1) {
+			throw new CommandFailureException(""
+					+ "Expected a list of groups, followed by some integer value X.\n"
 					+ "```"
 					+ "For the syntax of this command, use one of the following:\n"
 					+ BotUtils.BOT_PREFIX + "probonmull (name, K, k1, k2), ... (name, K, k1, k2), X\n"
@@ -349,51 +258,166 @@ public class HyperGeoCommands {
 					+ "```");
 		}
 		
-		args = args.replaceAll("\\(", "");
+		final int X = args.getNumber(0);
+		GroupSet groups = parseGroups(args);
 		
-		// The last index will be X
-		String[] groupsAndX = args.split("\\)\\w*,");
-		int X;
+		Double ans = ComputePool.compute(() -> {
+			try {
+				return MultiHyperGeo.probabilityOnLondonMullToX(groups, X);
+			} catch (IllegalArgumentException e) {
+				throw new CommandFailureException(e.getMessage());
+			}
+		});
 		
-		// Unlike parsing for n in /prob, we need to try to find an X. No need to keep track of if we 
-		// tried to parse it or not. This is also the reason why we're not using parseMultivariate().
-		// We need a value for X, and we can't just parse like for N, because N is optional.
-		try {
-			// Since we matched (.*),.* there must be at least one split, so the array is at least of length two, 
-			// and this should never access out of bounds. If they did not specify a value for n, or the index
-			// contains some garbage values, this should throw a NumberFormatException. It does so when it sees
-			// a parenthesis or non-number character, and it does so when it sees the empty string too.
-			X = Integer.parseInt(groupsAndX[groupsAndX.length - 1].trim());
-		} catch (NumberFormatException e) {
+		BotUtils.sendMessage(event.getChannel(), BotUtils.formatPercent(ans));
+	};
+
+	public static Command mullCompareHelp = (event, args) -> {
+		BotUtils.sendMessage(event.getChannel(), ""
+				+ "This command compares every mulligan rule. For each X, it shows the probability that, in the course of mulliganing down to X cards in hand, you'll draw the specified amounts of some specified groups of cards, under the Vancouver, Paris, and London mulligans, with and without a free first mulligan.\n"
+				+ "```"
+				+ "For the syntax of this command, use one of the following:\n"
+				+ BotUtils.BOT_PREFIX + "mullcompare (name, K, k1, k2), ... (name, K, k1, k2)\n"
+				+ BotUtils.BOT_PREFIX + "mullcompare (K, k1, k2), ... (K, k1, k2)\n"
+				+ "For what to put for a group, type " + BotUtils.BOT_PREFIX + "gh for details."
+				+ "```"
+				+ "```"
+				+ "Example:\n"
+				+ BotUtils.BOT_PREFIX + "mullcompare (Lands, 24, 2, 4), (Creature, 15, 1, 7), (Other Cards, 21, 0, 7)\n"
+				+ "```");
+	};
+
+	public static Command mullCompare = (event, args) -> {
+		if (args.isHelp()) {
+			mullCompareHelp.runCommand(event, args);
+			return;
+		}
+		verifySyntax(args);
+		if (!isMultivariate(args)) {
 			throw new CommandFailureException(""
-					+ "Expected some integer value X, but got \"" + groupsAndX[groupsAndX.length - 1].trim() + "\" instead.\n"
 					+ "```"
-					+ "For the syntax of the multivariate form of this command, use one of the following:\n"
-					+ BotUtils.BOT_PREFIX + "probonmull (name, K, k1, k2), ..., (name, K, k1, k2), n\n"
-					+ BotUtils.BOT_PREFIX + "probonmull (name, K, k1, k2), ..., (name, K, k1, k2)\n"
-					+ BotUtils.BOT_PREFIX + "probonmull (K, k1, k2), ..., (K, k1, k2), n\n"
-					+ BotUtils.BOT_PREFIX + "probonmull (K, k1, k2), ..., (K, k1, k2)\n"
+					+ "For the syntax of this command, use one of the following:\n"
+					+ BotUtils.BOT_PREFIX + "mullcompare (name, K, k1, k2), ... (name, K, k1, k2)\n"
+					+ BotUtils.BOT_PREFIX + "mullcompare (K, k1, k2), ... (K, k1, k2)\n"
 					+ "```");
 		}
-		
-		List<String> groups = new ArrayList<>(Arrays.asList(groupsAndX));
-		
-		// Remove X because it's been parsed and isn't a group.
-		groups.remove(groups.size() - 1);
-		
-		List<Group> glist = parseGroupList(groups);
-		
-		Double ans = 0d;
-		try {
-			ans = MultiHyperGeo.probabilityOnLondonMullToX(glist, X);
-		} catch (IllegalArgumentException e) {
-			throw new CommandFailureException(e.getMessage());
-		} catch (org.apache.commons.math3.exception.MathArithmeticException e) {
-			throw new CommandFailureException("Something went wrong. Please use smaller arguments.");
+
+		// The hand size, if one was given, doesn't matter. Every rule starts from seven.
+		MultivariateData mvd = parseMultivariate(args);
+
+		MulliganTable table = ComputePool.compute(() -> {
+			try {
+				return MultiHyperGeo.mulliganTable(mvd.getGroups());
+			} catch (IllegalArgumentException e) {
+				throw new CommandFailureException(e.getMessage());
+			}
+		});
+
+		StringBuilder message = new StringBuilder();
+		message.append("Probability of a success when willing to mulligan to X:\n");
+		message.append(String.format("%-3s%-10s%-10s%-10s%-10s%-10s%-10s\n", "X", "Vancouver", "+free", "Paris",
+				"+free", "London", "+free"));
+		for (int X = MulliganTable.STARTING_HAND_SIZE; X >= 0; X--) {
+			message.append(String.format("%-3d", X));
+			for (MulliganRule rule : MulliganRule.values()) {
+				message.append(String.format("%-10s", formatTablePercent(table.probability(rule, false, X))));
+				message.append(String.format("%-10s", formatTablePercent(table.probability(rule, true, X))));
+			}
+			message.append("\n");
 		}
-		
-		BotUtils.sendMessage(event.getChannel(), BotUtils.formatPercent(ans));
+		BotUtils.sendMessage(event.getChannel(), BotUtils.codeBlock(message.toString()));
 	};
+
+	public static Command drawCurveHelp = (event, args) -> {
+		BotUtils.sendMessage(event.getChannel(), ""
+				+ "This command calculates the probability that you'll have drawn the specified amounts of some specified groups of cards by each turn of the game, both on the play and on the draw.\n"
+				+ "```"
+				+ "For the syntax of this command, use one of the following:\n"
+				+ "Univariate:\n"
+				+ BotUtils.BOT_PREFIX + "drawcurve N, K, k1, k2, T\n"
+				+ "\n"
+				+ "Multivariate:\n"
+				+ BotUtils.BOT_PREFIX + "drawcurve Group, ..., Group, T\n"
+				+ BotUtils.BOT_PREFIX + "drawcurve Group, ..., Group\n"
+				+ "For what to put for a group, type " + BotUtils.BOT_PREFIX + "gh for details. Unlike other commands, a group without k2 can be any number of cards, since the hand grows past seven.\n"
+				+ "```"
+				+ "```"
+				+ "Where T is the last turn to show (default " + DEFAULT_TURNS + ", at most " + MAX_TURNS + "). Turn 0 is your opening hand.\n"
+				+ "\n"
+				+ "Example: How likely am I to have hit my fourth land drop by each turn, with 24 lands in 60 cards?\n"
+				+ BotUtils.BOT_PREFIX + "drawcurve 60, 24, 4, 60, 6\n"
+				+ "```");
+	};
+
+	public static Command drawCurve = (event, args) -> {
+		if (args.isHelp()) {
+			drawCurveHelp.runCommand(event, args);
+			return;
+		}
+
+		// Index 0 is on the play, and 1 is on the draw.
+		double[][] curves;
+		int turns;
+		if (isMultivariate(args)) {
+			// The optional n on the end is the number of turns instead.
+			MultivariateData mvd = parseMultivariate(args, DEFAULT_TURNS, true);
+			turns = mvd.getN();
+			verifyTurns(turns);
+			final int T = turns;
+			curves = ComputePool.compute(() -> {
+				try {
+					return new double[][] { MultiHyperGeo.probabilityByTurn(mvd.getGroups(), T, true),
+							MultiHyperGeo.probabilityByTurn(mvd.getGroups(), T, false) };
+				} catch (IllegalArgumentException e) {
+					throw new CommandFailureException(e.getMessage());
+				}
+			});
+		} else {
+			// Only the five number form. With four, the last would be T, and k an exact count, which isn't something
+			// you'd want a curve of.
+			verifySyntax(args);
+			if (args.getNumberCount() != 5) {
+				throw new CommandFailureException(""
+						+ "```"
+						+ "For the syntax of the univariate form of this command, use the following:\n"
+						+ BotUtils.BOT_PREFIX + "drawcurve N, K, k1, k2, T\n"
+						+ "```");
+			}
+			UnivariateData uvd = parseUnivariate(args);
+			turns = uvd.getn();
+			verifyTurns(turns);
+			final int T = turns;
+			curves = ComputePool.compute(() -> {
+				try {
+					return new double[][] {
+							UniHyperGeo.probabilityByTurn(uvd.getN(), uvd.getK(), uvd.getk1(), uvd.getk2(), T, true),
+							UniHyperGeo.probabilityByTurn(uvd.getN(), uvd.getK(), uvd.getk1(), uvd.getk2(), T, false) };
+				} catch (IllegalArgumentException e) {
+					throw new CommandFailureException(e.getMessage());
+				}
+			});
+		}
+		double[] onThePlay = curves[0], onTheDraw = curves[1];
+
+		StringBuilder message = new StringBuilder();
+		message.append("Probability of a success by each turn:\n");
+		message.append(String.format("%-6s%-10s%-10s\n", "Turn", "Play", "Draw"));
+		for (int t = 0; t <= turns; t++) {
+			message.append(String.format("%-6d%-10s%-10s\n", t, formatTablePercent(onThePlay[t]),
+					formatTablePercent(onTheDraw[t])));
+		}
+		BotUtils.sendMessage(event.getChannel(), BotUtils.codeBlock(message.toString()));
+	};
+
+	private static void verifyTurns(int turns) throws CommandFailureException {
+		if (turns < 0 || turns > MAX_TURNS) {
+			throw new CommandFailureException("The number of turns must be between 0 and " + MAX_TURNS + ".");
+		}
+	}
+
+	private static String formatTablePercent(double d) {
+		return String.format("%.2f%%", d * 100);
+	}
 	
 	
 	
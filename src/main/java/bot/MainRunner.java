@@ -1,5 +1,8 @@
 package bot;
 
+import java.util.concurrent.TimeUnit;
+
+import statistics.StatisticsPool;
 import sx.blah.discord.api.ClientBuilder;
 import sx.blah.discord.api.IDiscordClient;
 
@@ -17,15 +20,53 @@ public class MainRunner {
 
 		IDiscordClient cli = getBuiltDiscordClient(token);
 
+		// -Dstatistics.parallelism= changes how many threads large calculations are
+		// split between. It defaults to one per core.
+		StatisticsPool.setParallelism(Integer.getInteger("statistics.parallelism", StatisticsPool.PARALLELISM));
+
+		CommandRunner runner = getCommandRunner();
+
 		// Register a listener via the EventSubscriber annotation which allows for
 		// organization and delegation of events
-		cli.getDispatcher().registerListener(new CommandHandler());
+		cli.getDispatcher().registerListener(new CommandHandler(runner));
+
+		// Let any commands and statistics still being calculated finish before the
+		// JVM exits.
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				runner.shutdown();
+				runner.awaitTermination(5, TimeUnit.SECONDS);
+				ComputePool.shutdown(5, TimeUnit.SECONDS);
+				StatisticsPool.shutdown(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}));
 
 		// Only login after all events are registered otherwise some may be missed.
 		cli.login();
 
 	}
 
+	// With -Dcommand.virtualThreads=true, every command gets its own virtual
+	// thread, up to -Dcommand.maxInProgress= at once, if this version of Java has
+	// them. Otherwise, a fixed number of workers take turns between servers. How
+	// many, and how many commands can wait, can be changed with
+	// -Dcommand.workers=, -Dcommand.capacity=, and -Dcommand.laneCapacity=.
+	static CommandRunner getCommandRunner() {
+		if (Boolean.getBoolean("command.virtualThreads")) {
+			if (VirtualCommandRunner.isSupported()) {
+				System.out.println("Running commands on virtual threads.");
+				return new VirtualCommandRunner(
+						Integer.getInteger("command.maxInProgress", VirtualCommandRunner.DEFAULT_MAX_IN_PROGRESS));
+			}
+			System.out.println("Virtual threads need Java 21 or later. Using worker threads instead.");
+		}
+		return new CommandExecutor(Integer.getInteger("command.workers", CommandExecutor.DEFAULT_WORKERS),
+				Integer.getInteger("command.capacity", CommandExecutor.DEFAULT_CAPACITY),
+				Integer.getInteger("command.laneCapacity", CommandExecutor.DEFAULT_LANE_CAPACITY));
+	}
+
 	// Handles the creation and getting of a IDiscordClient object for a token
 	static IDiscordClient getBuiltDiscordClient(String token) {
 
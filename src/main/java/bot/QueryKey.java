@@ -0,0 +1,60 @@
+package bot;
+
+import java.util.Arrays;
+
+/**
+ * What a command was asked, as a key for {@link SingleFlight}. Two keys are
+ * equal if they're for the same command, with the same names and numbers in
+ * the same order.
+ *
+ * Whoever makes the key decides what goes in it. It should hold everything
+ * that changes the result, and nothing that doesn't, so that the same question
+ * asked in slightly different ways still gets the same key.
+ */
+public class QueryKey {
+
+	private final String command;
+	private final String[] names;
+	private final int[] values;
+	private final int hash;
+
+	/**
+	 * @param command
+	 *            The command's name.
+	 * @param names
+	 *            Any names that show up in the result, or null if there aren't
+	 *            any. The array is copied.
+	 * @param values
+	 *            The numbers the result depends on. The array is copied.
+	 */
+	public QueryKey(String command, String[] names, int... values) {
+		this.command = command;
+		this.names = names == null ? new String[0] : names.clone();
+		this.values = values.clone();
+		this.hash = 31 * (31 * command.hashCode() + Arrays.hashCode(this.names)) + Arrays.hashCode(this.values);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof QueryKey)) {
+			return false;
+		}
+		QueryKey other = (QueryKey) o;
+		return hash == other.hash && command.equals(other.command) && Arrays.equals(values, other.values)
+				&& Arrays.equals(names, other.names);
+	}
+
+	@Override
+	public String toString() {
+		return command + Arrays.toString(names) + Arrays.toString(values);
+	}
+
+}
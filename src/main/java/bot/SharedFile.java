@@ -0,0 +1,53 @@
+package bot;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A file that several commands send, like a chart shared through a
+ * {@link SingleFlight}, and that's deleted once the last of them is done with
+ * it.
+ *
+ * It starts out with one user, whoever made it. Passing {@link #share(int)} to
+ * the {@link SingleFlight} sets the real number once it's known. Every user
+ * calls {@link #release()} when they're finished, whether or not sending
+ * worked.
+ */
+public class SharedFile {
+
+	private final File file;
+	private final AtomicInteger users = new AtomicInteger(1);
+
+	public SharedFile(File file) {
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Sets the number of users. Only meant to be called before any of them have
+	 * the file, as a {@link SingleFlight.Sharing}.
+	 */
+	public void share(int users) {
+		this.users.set(users);
+	}
+
+	/**
+	 * Says that one user is done with the file. The last one deletes it.
+	 */
+	public void release() {
+		if (users.decrementAndGet() == 0) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * The number of users that haven't released the file yet.
+	 */
+	public int getUsers() {
+		return users.get();
+	}
+
+}
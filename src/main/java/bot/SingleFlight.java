@@ -0,0 +1,139 @@
+package bot;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Makes identical requests that arrive at the same time share one result.
+ *
+ * When someone posts a question in a busy channel, plenty of people paste the
+ * same command within a few seconds. The first caller with a given key does the
+ * work. Anyone who asks for the same key while that's in progress waits for it
+ * instead, and every one of them gets the same result, to send to their own
+ * channel. Once the work is done, the key is forgotten, so this is not a cache.
+ * The next request starts over.
+ *
+ * If the work fails, every caller waiting on it gets the same exception.
+ *
+ * @param <K>
+ *            What identifies a request, usually a {@link QueryKey}. Needs equals
+ *            and hashCode.
+ * @param <V>
+ *            The result.
+ */
+public class SingleFlight<K, V> {
+
+	/**
+	 * Told how many callers a result went to, before any of them get it. Results
+	 * that need cleaning up once everyone's done with them, like a
+	 * {@link SharedFile}, use this to know when that is.
+	 */
+	@FunctionalInterface
+	public interface Sharing<V> {
+		void share(V value, int callers);
+	}
+
+	private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+	private final Sharing<V> sharing;
+	private final LongAdder shared = new LongAdder();
+
+	public SingleFlight() {
+		this(null);
+	}
+
+	/**
+	 * @param sharing
+	 *            Called with each result and the number of callers it went to, or
+	 *            null if that doesn't matter.
+	 */
+	public SingleFlight(Sharing<V> sharing) {
+		this.sharing = sharing;
+	}
+
+	/**
+	 * Runs the computation, unless another thread is already running one with an
+	 * equal key, in which case this waits for that one's result instead.
+	 *
+	 * @return The result, which is the same object for every caller that shared
+	 *         it.
+	 */
+	public V run(K key, ComputePool.Computation<V> computation) throws CommandFailureException {
+		final Flight<V> mine = new Flight<>();
+		// The count is only changed while the key's entry is locked, so it's final
+		// once the flight has been removed.
+		final Flight<V> flight = flights.compute(key, (k, running) -> {
+			if (running == null) {
+				return mine;
+			}
+			running.callers++;
+			return running;
+		});
+		if (flight != mine) {
+			shared.increment();
+			return await(flight);
+		}
+
+		V value;
+		try {
+			value = computation.compute();
+		} catch (CommandFailureException | RuntimeException | Error e) {
+			flights.remove(key, mine);
+			mine.result.completeExceptionally(e);
+			throw e;
+		}
+		// Nobody else can join after this, so everyone who shares it is counted.
+		flights.remove(key, mine);
+		if (sharing != null) {
+			sharing.share(value, mine.callers);
+		}
+		mine.result.complete(value);
+		return value;
+	}
+
+	/**
+	 * The number of computations running right now.
+	 */
+	public int getInFlight() {
+		return flights.size();
+	}
+
+	/**
+	 * The number of callers that got another caller's result, instead of running
+	 * the computation themselves.
+	 */
+	public long getSharedCount() {
+		return shared.sum();
+	}
+
+	private static <V> V await(Flight<V> flight) throws CommandFailureException {
+		try {
+			// Not interruptible, so every caller that joined gets the result, and can
+			// clean up after it.
+			return flight.result.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof CommandFailureException) {
+				throw (CommandFailureException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * One computation in progress, and how many callers are waiting on it,
+	 * counting the one running it.
+	 */
+	private static class Flight<V> {
+		private final CompletableFuture<V> result = new CompletableFuture<>();
+		private int callers = 1;
+	}
+
+}
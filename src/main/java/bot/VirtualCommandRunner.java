@@ -0,0 +1,135 @@
+package bot;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every command on its own virtual thread.
+ *
+ * Most of a command's time is spent waiting, on Discord's rate limits, on
+ * files, or sleeping between messages. A waiting virtual thread doesn't hold on
+ * to an operating system thread, so thousands of commands can be in progress
+ * at once without thousands of threads. The parts of a command that actually
+ * keep a core busy go through {@link ComputePool}, which hands them to a small
+ * pool of ordinary threads, so they can't crowd out everything else.
+ *
+ * Virtual threads only exist on Java 21 and later. This code needs Java 9 or
+ * later, for {@link Math#multiplyHigh(long, long)}, and is built with Java 17,
+ * so they're looked up by reflection. Check {@link #isSupported()} first, and
+ * use a {@link CommandExecutor} when they aren't there.
+ */
+public class VirtualCommandRunner implements CommandRunner {
+
+	/**
+	 * The most commands that can be in progress at once by default.
+	 */
+	public static final int DEFAULT_MAX_IN_PROGRESS = 10000;
+
+	// Executors.newVirtualThreadPerTaskExecutor(), or null before Java 21.
+	private static final Method NEW_EXECUTOR = findExecutorFactory();
+
+	private final ExecutorService executor;
+	private final Semaphore inProgress;
+	private final int maxInProgress;
+
+	public VirtualCommandRunner() throws UnsupportedOperationException {
+		this(DEFAULT_MAX_IN_PROGRESS);
+	}
+
+	/**
+	 * @param maxInProgress
+	 *            The most commands that can be running at once. Any more are
+	 *            refused.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             If this version of Java doesn't have virtual threads.
+	 * @throws IllegalArgumentException
+	 *             If (maxInProgress < 1).
+	 */
+	public VirtualCommandRunner(int maxInProgress) throws UnsupportedOperationException, IllegalArgumentException {
+		if (maxInProgress < 1) {
+			throw new IllegalArgumentException(
+					"The number of commands in progress must be at least one. Otherwise nothing could ever run.");
+		}
+		if (!isSupported()) {
+			throw new UnsupportedOperationException("Virtual threads need Java 21 or later.");
+		}
+		try {
+			this.executor = (ExecutorService) NEW_EXECUTOR.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Virtual threads could not be started.", e);
+		}
+		this.maxInProgress = maxInProgress;
+		this.inProgress = new Semaphore(maxInProgress);
+	}
+
+	/**
+	 * Whether this version of Java has virtual threads.
+	 */
+	public static boolean isSupported() {
+		return NEW_EXECUTOR != null;
+	}
+
+	/**
+	 * Starts the command on a new virtual thread straight away. There's no queue,
+	 * so the key isn't needed. Every command gets its own thread, and none has to
+	 * wait its turn.
+	 */
+	@Override
+	public boolean submit(long key, Runnable command) {
+		if (!inProgress.tryAcquire()) {
+			return false;
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					command.run();
+				} catch (RuntimeException e) {
+					System.out.println("\n\n");
+					e.printStackTrace(System.out);
+				} finally {
+					inProgress.release();
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			// Shut down.
+			inProgress.release();
+			return false;
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * The number of commands running right now.
+	 */
+	public int getInProgress() {
+		return maxInProgress - inProgress.availablePermits();
+	}
+
+	public int getMaxInProgress() {
+		return maxInProgress;
+	}
+
+	private static Method findExecutorFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException | SecurityException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+package statistics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The one thread pool every parallel statistics computation shares.
+ *
+ * It is a work-stealing fork-join pool with one thread per core by default, so
+ * however many requests arrive at once, the statistics code can never have more
+ * threads than the machine can run. Its threads are daemons, and are created
+ * only once something actually runs in parallel.
+ *
+ * Work should only be sent here when it's big enough to be worth the hand off,
+ * see {@link #shouldParallelize(long)}. Tasks are expected to split themselves
+ * recursively, while there's enough work left to be worth splitting, rather
+ * than into a fixed number of pieces up front.
+ */
+public class StatisticsPool {
+
+	/**
+	 * Protected Constructor for static method class
+	 */
+	protected StatisticsPool() {
+	}
+
+	/**
+	 * The number of threads used by default, one per core.
+	 */
+	public static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Roughly how many basic operations (one pmf term, one multiply-add) a
+	 * computation must need before running it in parallel pays off.
+	 */
+	public static final long PARALLEL_THRESHOLD = 1 << 15;
+
+	private static ForkJoinPool pool = null;
+	private static volatile int parallelism = PARALLELISM;
+
+	// Every pool this class makes uses the same factory, so its threads can be
+	// told apart from those of any other fork-join pool.
+	private static final ForkJoinPool.ForkJoinWorkerThreadFactory THREAD_FACTORY = new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		@Override
+		public ForkJoinWorkerThread newThread(ForkJoinPool p) {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			thread.setName("statistics-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	/**
+	 * Whether a computation of roughly this many basic operations should be run on
+	 * the pool instead of in the calling thread. Never true with only one thread.
+	 */
+	public static boolean shouldParallelize(long estimatedWork) {
+		return parallelism > 1 && estimatedWork >= PARALLEL_THRESHOLD;
+	}
+
+	/**
+	 * Changes the number of threads. A pool that's already running keeps the
+	 * threads it has until it's {@link #shutdown(long, TimeUnit) shut down}, and
+	 * the next one gets the new number.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If (parallelism < 1).
+	 */
+	public static void setParallelism(int parallelism) throws IllegalArgumentException {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("The statistics pool needs at least one thread.");
+		}
+		StatisticsPool.parallelism = parallelism;
+	}
+
+	public static int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Runs the task on the pool and waits for its result. If called from one of
+	 * the pool's own threads, the task just runs there. Threads of any other
+	 * fork-join pool, such as the common pool, hand it over like everyone else,
+	 * so that it never runs outside this pool.
+	 */
+	public static <T> T invoke(ForkJoinTask<T> task) {
+		final ForkJoinPool current = ForkJoinTask.getPool();
+		if (current != null && current.getFactory() == THREAD_FACTORY) {
+			return task.invoke();
+		}
+		while (true) {
+			final ForkJoinPool target = getPool();
+			try {
+				return target.invoke(task);
+			} catch (RejectedExecutionException e) {
+				// Shut down between getting it and handing it the task, which never
+				// started. The next one takes it.
+				if (!target.isShutdown()) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops the pool once any running tasks complete, and waits up to the timeout
+	 * for that to happen. Anything submitted afterwards starts a new pool.
+	 *
+	 * @return true if the pool is no longer running anything.
+	 */
+	public static boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		ForkJoinPool old;
+		synchronized (StatisticsPool.class) {
+			old = pool;
+			pool = null;
+		}
+		if (old == null) {
+			return true;
+		}
+		old.shutdown();
+		return old.awaitTermination(timeout, unit);
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool(parallelism, THREAD_FACTORY, null, false);
+		}
+		return pool;
+	}
+
+}
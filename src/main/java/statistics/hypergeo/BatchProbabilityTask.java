@@ -0,0 +1,46 @@
+package statistics.hypergeo;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates a range of rows of a univariate table, see
+ * {@link UniHyperGeo#probability(int[], int[], int[], int[], int[], double[])},
+ * on the {@link statistics.StatisticsPool}.
+ *
+ * Ranges are split in half until they're small, or the pool already has plenty
+ * of queued work. Each piece writes straight into its own rows of the output,
+ * so nothing needs to be combined afterwards.
+ */
+@SuppressWarnings("serial")
+class BatchProbabilityTask extends RecursiveAction {
+
+	// Ranges with fewer rows than this are evaluated rather than split.
+	private static final int LEAF_SIZE = 256;
+
+	private final int[] N, K, n, k1, k2;
+	private final double[] out;
+	private final int from, to;
+
+	BatchProbabilityTask(int[] N, int[] K, int[] n, int[] k1, int[] k2, double[] out, int from, int to) {
+		this.N = N;
+		this.K = K;
+		this.n = n;
+		this.k1 = k1;
+		this.k2 = k2;
+		this.out = out;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from > LEAF_SIZE && getSurplusQueuedTaskCount() <= 3) {
+			final int middle = (from + to) >>> 1;
+			invokeAll(new BatchProbabilityTask(N, K, n, k1, k2, out, from, middle),
+					new BatchProbabilityTask(N, K, n, k1, k2, out, middle, to));
+			return;
+		}
+		UniHyperGeo.unverifiedProbability(N, K, n, k1, k2, out, from, to);
+	}
+
+}
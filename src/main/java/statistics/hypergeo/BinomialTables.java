@@ -0,0 +1,180 @@
+package statistics.hypergeo;
+
+import java.math.BigInteger;
+
+/**
+ * Process-wide lookup tables for binomial coefficients and log factorials,
+ * shared by {@link UniHyperGeo} and {@link MultiHyperGeo}.
+ *
+ * Every binomial coefficient with n up to {@link #EXACT_LIMIT} is precomputed
+ * exactly, which covers the 40, 60, 99 and 100 card decks that make up nearly
+ * every query. Those are stored both as correctly rounded doubles and, where
+ * they fit, as exact longs.
+ *
+ * Past that, log factorials are kept in a table which grows on demand. Reads
+ * never lock. Growing copies the old table into a larger one under a lock and
+ * then publishes it, so a reader always sees either the old table or the new
+ * one, both of which are complete up to their length.
+ */
+public class BinomialTables {
+
+	/**
+	 * Protected Constructor for static method class
+	 */
+	protected BinomialTables() {
+	}
+
+	/**
+	 * The largest n for which every C(n, k) is precomputed exactly.
+	 */
+	public static final int EXACT_LIMIT = 128;
+
+	/**
+	 * The largest population for which taking differences of tabulated log
+	 * factorials keeps a pmf within about 1e-12 of the exact answer. Above this, the
+	 * rounding in log(N!) itself starts to matter, and
+	 * {@link HyperGeoMath#logPmf(int, int, int, int) the saddle point expansion}
+	 * should be used instead.
+	 */
+	static final int LOG_FACTORIAL_PMF_LIMIT = 512;
+
+	// The table will never grow past this many entries, 8MB. Larger arguments are
+	// computed directly, which costs a log and a few multiplications.
+	private static final int MAX_LOG_FACTORIAL_TABLE_SIZE = 1 << 20;
+
+	private static final double HALF_LOG_TWO_PI = 0.5 * Math.log(2 * Math.PI);
+
+	// Row n starts at index n * (n + 1) / 2, and holds C(n, 0) through C(n, n).
+	private static final double[] EXACT_BINOMIALS;
+	// The same as above, but -1 where the coefficient doesn't fit in a long.
+	private static final long[] EXACT_LONG_BINOMIALS;
+
+	private static volatile double[] logFactorials = computeLogFactorials(new double[0], EXACT_LIMIT * 8);
+
+	static {
+		final int size = (EXACT_LIMIT + 1) * (EXACT_LIMIT + 2) / 2;
+		EXACT_BINOMIALS = new double[size];
+		EXACT_LONG_BINOMIALS = new long[size];
+
+		// Build Pascal's triangle exactly, then round each entry once.
+		BigInteger[] row = { BigInteger.ONE };
+		for (int n = 0; n <= EXACT_LIMIT; n++) {
+			final int start = rowStart(n);
+			for (int k = 0; k <= n; k++) {
+				EXACT_BINOMIALS[start + k] = row[k].doubleValue();
+				EXACT_LONG_BINOMIALS[start + k] = row[k].bitLength() < Long.SIZE ? row[k].longValue() : -1;
+			}
+
+			BigInteger[] next = new BigInteger[n + 2];
+			next[0] = BigInteger.ONE;
+			next[n + 1] = BigInteger.ONE;
+			for (int k = 1; k <= n; k++) {
+				next[k] = row[k - 1].add(row[k]);
+			}
+			row = next;
+		}
+	}
+
+	/********************************/
+	/* Binomial Coefficients        */
+	/********************************/
+
+	/**
+	 * The binomial coefficient C(n, k), zero when k is outside of [0, n]. Exact up
+	 * to rounding when n is at most {@link #EXACT_LIMIT}, and computed from log
+	 * factorials otherwise.
+	 */
+	public static double binomial(int n, int k) {
+		if (k < 0 || k > n) {
+			return 0;
+		}
+		if (n <= EXACT_LIMIT) {
+			return EXACT_BINOMIALS[rowStart(n) + k];
+		}
+		return Math.exp(logBinomial(n, k));
+	}
+
+	/**
+	 * The exact binomial coefficient C(n, k), zero when k is outside of [0, n], or
+	 * -1 if n is greater than {@link #EXACT_LIMIT} or the coefficient doesn't fit
+	 * in a long.
+	 */
+	public static long exactBinomial(int n, int k) {
+		if (k < 0 || k > n) {
+			return 0;
+		}
+		if (n <= EXACT_LIMIT) {
+			return EXACT_LONG_BINOMIALS[rowStart(n) + k];
+		}
+		return -1;
+	}
+
+	/**
+	 * The natural log of the binomial coefficient C(n, k), or negative infinity
+	 * when k is outside of [0, n].
+	 */
+	public static double logBinomial(int n, int k) {
+		if (k < 0 || k > n) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		return logFactorial(n) - logFactorial(k) - logFactorial(n - k);
+	}
+
+	/********************************/
+	/* Log Factorials               */
+	/********************************/
+
+	/**
+	 * The natural log of n!, for n greater than or equal to zero.
+	 */
+	public static double logFactorial(int n) {
+		final double[] table = logFactorials;
+		if (n < table.length) {
+			return table[n];
+		}
+		if (n >= MAX_LOG_FACTORIAL_TABLE_SIZE) {
+			return computeLogFactorial(n);
+		}
+		return growLogFactorials(n)[n];
+	}
+
+	private static synchronized double[] growLogFactorials(int n) {
+		// Another thread may have already grown the table while we waited.
+		double[] table = logFactorials;
+		if (n < table.length) {
+			return table;
+		}
+
+		// Double each time, so that a slowly increasing N doesn't copy over and over.
+		int size = table.length;
+		while (size <= n) {
+			size *= 2;
+		}
+		table = computeLogFactorials(table, Math.min(size, MAX_LOG_FACTORIAL_TABLE_SIZE));
+		logFactorials = table;
+		return table;
+	}
+
+	private static double[] computeLogFactorials(double[] old, int size) {
+		final double[] table = new double[size];
+		System.arraycopy(old, 0, table, 0, old.length);
+		for (int i = old.length; i < size; i++) {
+			table[i] = computeLogFactorial(i);
+		}
+		return table;
+	}
+
+	private static double computeLogFactorial(int n) {
+		// Each entry is computed separately from Stirling's series rather than as a
+		// running sum of logs, so that rounding errors don't accumulate up the table.
+		if (n < 2) {
+			return 0;
+		}
+		return (n + 0.5) * Math.log(n) - n + HALF_LOG_TWO_PI + HyperGeoMath.stirlingError(n);
+	}
+
+	private static int rowStart(int n) {
+		return n * (n + 1) / 2;
+	}
+
+}
@@ -0,0 +1,203 @@
+package statistics.hypergeo;
+
+import java.util.Arrays;
+
+/**
+ * Reduces a multivariate query to the smallest equivalent one.
+ *
+ * People ask the same question in a lot of different ways. They list the groups
+ * in a different order, split the cards they don't care about into several
+ * groups, or ask for ranges that can't all be reached in n cards. None of that
+ * changes the probability, so before anything is calculated (or looked up in a
+ * {@link HyperGeoCache}), the query is rewritten as follows:
+ *
+ * 1. Every group whose range is everything it could give, [0, min(K, n)],
+ * doesn't constrain anything. All of those are merged into one group of other
+ * cards.
+ *
+ * 2. Every range is narrowed to what's actually possible. A group can't give
+ * fewer than n minus the most the other groups can give, or more than n minus
+ * the least they can give. Narrowing one range can narrow the others, so this
+ * repeats until nothing changes.
+ *
+ * 3. If a group's narrowed range still allows everything the other groups
+ * leave room for, it doesn't constrain anything after all, and is merged into
+ * the other cards. Then the ranges are narrowed again, and so on, one group at
+ * a time.
+ *
+ * 4. The groups that are left are sorted by K, then k1, then k2, with the merged
+ * group last.
+ *
+ * Two identical groups that do constrain something can't be merged. Drawing one
+ * or two from each of two groups of 4 isn't the same as drawing two to four
+ * from a group of 8. Sorting puts them next to each other though, so every
+ * order they were given in ends up the same.
+ */
+public class Canonicalizer {
+
+	/**
+	 * Protected Constructor for static method class
+	 */
+	protected Canonicalizer() {
+	}
+
+	/**
+	 * The smallest set of groups with the same probability of success as the
+	 * given ones in a sample of n, as described above. The result's maximums are
+	 * never more than n, and canonicalizing it again gives the same groups.
+	 *
+	 * @return The canonical groups, or null if no outcome can succeed, so the
+	 *         probability is zero.
+	 */
+	public static GroupSet canonicalize(GroupSet groups, int n) {
+		final int size = groups.size();
+
+		// Pull out the groups that don't constrain anything.
+		int constrained = 0;
+		long otherCards = 0;
+		final int[] K = new int[size];
+		final int[] low = new int[size + 1];
+		final int[] high = new int[size + 1];
+		for (int i = 0; i < size; i++) {
+			if (isFree(groups, i, n)) {
+				otherCards += groups.K[i];
+			} else {
+				K[constrained] = groups.K[i];
+				low[constrained] = groups.k1[i];
+				high[constrained] = Math.min(groups.kmax[i], n);
+				constrained++;
+			}
+		}
+		boolean merged = constrained < size;
+
+		while (true) {
+			// The other cards take part in narrowing, since how far they can go depends
+			// on how much the rest leaves. They keep their whole range though, so that
+			// canonicalizing again doesn't change anything.
+			low[constrained] = 0;
+			high[constrained] = (int) Math.min(otherCards, n);
+			if (!narrow(low, high, constrained + 1, n)) {
+				return null;
+			}
+			sort(K, low, high, constrained);
+
+			final int redundant = findRedundant(K, low, high, constrained, otherCards, n);
+			if (redundant < 0) {
+				break;
+			}
+			otherCards += K[redundant];
+			constrained--;
+			System.arraycopy(K, redundant + 1, K, redundant, constrained - redundant);
+			System.arraycopy(low, redundant + 1, low, redundant, constrained - redundant);
+			System.arraycopy(high, redundant + 1, high, redundant, constrained - redundant);
+			merged = true;
+		}
+
+		final int canonicalSize = constrained + (merged ? 1 : 0);
+		final int[] canonicalK = Arrays.copyOf(K, canonicalSize);
+		final int[] k1 = Arrays.copyOf(low, canonicalSize);
+		final int[] k2 = Arrays.copyOf(high, canonicalSize);
+		if (merged) {
+			canonicalK[constrained] = (int) otherCards;
+			k1[constrained] = 0;
+			k2[constrained] = (int) Math.min(otherCards, n);
+		}
+		return new GroupSet(canonicalK, k1, k2);
+	}
+
+	/**
+	 * Whether a group's range allows everything it could possibly give.
+	 */
+	private static boolean isFree(GroupSet groups, int i, int n) {
+		return groups.k1[i] == 0 && groups.kmax[i] >= Math.min(groups.K[i], n);
+	}
+
+	/**
+	 * The first group, in sorted order, whose range allows everything the others
+	 * leave room for, so that it doesn't constrain anything either. The ranges
+	 * must already be narrowed, and the other cards count with their whole range.
+	 *
+	 * Only one is found at a time. Two groups can each be implied by the other,
+	 * like drawing at least 3 from one when the only other group can give at most
+	 * 4 of 7, and only one of them can go.
+	 *
+	 * @return Its index, or -1 if every group constrains something.
+	 */
+	private static int findRedundant(int[] K, int[] low, int[] high, int constrained, long otherCards, int n) {
+		long lowSum = 0, highSum = Math.min(otherCards, n);
+		for (int i = 0; i < constrained; i++) {
+			lowSum += low[i];
+			highSum += high[i];
+		}
+		for (int i = 0; i < constrained; i++) {
+			// What the group could give if it had no range of its own.
+			final long least = Math.max(0, n - (highSum - high[i]));
+			final long most = Math.min(Math.min(K[i], n), n - (lowSum - low[i]));
+			if (low[i] <= least && high[i] >= most) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Sorts the first count groups by K, then low, then high. There are only ever
+	 * a few, so insertion sort is plenty.
+	 */
+	private static void sort(int[] K, int[] low, int[] high, int count) {
+		for (int i = 1; i < count; i++) {
+			final int k = K[i], l = low[i], h = high[i];
+			int j = i - 1;
+			while (j >= 0 && (K[j] > k || (K[j] == k && (low[j] > l || (low[j] == l && high[j] > h))))) {
+				K[j + 1] = K[j];
+				low[j + 1] = low[j];
+				high[j + 1] = high[j];
+				j--;
+			}
+			K[j + 1] = k;
+			low[j + 1] = l;
+			high[j + 1] = h;
+		}
+	}
+
+	/**
+	 * Narrows each range [low, high] to the values that can actually happen when
+	 * the groups add up to n, until nothing changes.
+	 *
+	 * @return false if some range became empty.
+	 */
+	private static boolean narrow(int[] low, int[] high, int size, int n) {
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			long lowSum = 0, highSum = 0;
+			for (int i = 0; i < size; i++) {
+				lowSum += low[i];
+				highSum += high[i];
+			}
+			if (lowSum > n || highSum < n) {
+				return false;
+			}
+			for (int i = 0; i < size; i++) {
+				// What's left of n after the others give as much, or as little, as they can.
+				final long least = n - (highSum - high[i]);
+				final long most = n - (lowSum - low[i]);
+				if (least > low[i]) {
+					lowSum += least - low[i];
+					low[i] = (int) least;
+					changed = true;
+				}
+				if (most < high[i]) {
+					highSum -= high[i] - most;
+					high[i] = (int) most;
+					changed = true;
+				}
+				if (low[i] > high[i]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,130 @@
+package statistics.hypergeo;
+
+import java.util.Arrays;
+
+/**
+ * Multivariate probabilities by dynamic programming over the number of cards
+ * drawn so far, rather than over every outcome.
+ *
+ * The numerator of the multivariate probability is the sum, over every outcome
+ * k summing to n, of the product of C(K[i], k[i]). That is exactly the
+ * coefficient of x^n in the product of the polynomials sum C(K[i], j) x^j for j
+ * from k1[i] to k2[i]. Multiplying those polynomials together one group at a
+ * time, dropping every power above n, takes about (number of groups) * n^2
+ * operations however many outcomes there are.
+ *
+ * For small decks the coefficients are read straight out of
+ * {@link BinomialTables}. For large ones C(K[i], j) is scaled into the binomial
+ * probability C(K[i], j) p^j q^(K[i] - j), with p = n / N, exactly as in
+ * {@link HyperGeoMath}. The scale factors multiply out to the same p^n q^(N - n)
+ * in every term, and cancel against C(N, n) scaled the same way, so nothing can
+ * overflow.
+ */
+class Convolution {
+
+	/**
+	 * Protected Constructor for static method class
+	 */
+	protected Convolution() {
+	}
+
+	/**
+	 * The multivariate probability that each group i draws between k1[i] and k2[i]
+	 * in a sample of n. Arguments are assumed to have already been verified by the
+	 * caller.
+	 */
+	static double probability(int N, int[] K, int[] k1, int[] k2, int n) {
+		if (N == 0) {
+			return 1;
+		}
+		final Scale scale = new Scale(N, n);
+		final double[] polynomial = convolve(K, k1, k2, n, scale, -1);
+		return polynomial[n] / scale.denominator(N, n);
+	}
+
+	/**
+	 * Multiplies the weight polynomials of every group except skip (use -1 to keep
+	 * them all), keeping powers up to maxDegree.
+	 *
+	 * @return polynomial, where polynomial[m] is the scaled number of ways the
+	 *         groups can draw m cards between them while each stays within its
+	 *         range.
+	 */
+	static double[] convolve(int[] K, int[] k1, int[] k2, int maxDegree, Scale scale, int skip) {
+		double[] polynomial = new double[maxDegree + 1];
+		double[] next = new double[maxDegree + 1];
+		double[] weights = new double[maxDegree + 1];
+		polynomial[0] = 1;
+		int degree = 0; // The highest power that can be nonzero so far
+
+		for (int i = 0; i < K.length; i++) {
+			if (i == skip) {
+				continue;
+			}
+			final int low = k1[i];
+			final int high = Math.min(Math.min(k2[i], K[i]), maxDegree);
+			if (low > high) {
+				// This group can't be satisfied, so nothing can.
+				Arrays.fill(polynomial, 0);
+				return polynomial;
+			}
+			for (int j = low; j <= high; j++) {
+				weights[j] = scale.weight(K[i], j);
+			}
+
+			final int newDegree = Math.min(degree + high, maxDegree);
+			Arrays.fill(next, 0, newDegree + 1, 0);
+			for (int m = 0; m <= degree; m++) {
+				final double coefficient = polynomial[m];
+				if (coefficient == 0) {
+					continue;
+				}
+				final int top = Math.min(high, maxDegree - m);
+				for (int j = low; j <= top; j++) {
+					next[m + j] += coefficient * weights[j];
+				}
+			}
+
+			double[] swap = polynomial;
+			polynomial = next;
+			next = swap;
+			degree = newDegree;
+		}
+		return polynomial;
+	}
+
+	/**
+	 * How binomial coefficients are scaled so that the polynomials can't overflow.
+	 * See the class description.
+	 */
+	static class Scale {
+		private final boolean exact;
+		private final double p;
+		private final double q;
+
+		Scale(int N, int n) {
+			this.exact = N <= BinomialTables.EXACT_LIMIT;
+			this.p = N == 0 ? 0 : (double) n / (double) N;
+			this.q = N == 0 ? 1 : (double) (N - n) / (double) N;
+		}
+
+		/**
+		 * The scaled C(K, k).
+		 */
+		double weight(int K, int k) {
+			if (exact) {
+				return BinomialTables.binomial(K, k);
+			}
+			return Math.exp(HyperGeoMath.logBinomialProbability(k, K, p, q));
+		}
+
+		/**
+		 * The scaled C(N, n), which a coefficient of x^n must be divided by to become a
+		 * probability.
+		 */
+		double denominator(int N, int n) {
+			return weight(N, n);
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+package statistics.hypergeo;
+
+/**
+ * The mean, variance, and standard deviation of how many cards are drawn from
+ * every group, and the covariance between every pair of groups, all computed
+ * at once for a sample of n. Made by
+ * {@link MultiHyperGeo#summary(GroupSet, int)}.
+ *
+ * For the multivariate hypergeometric distribution, with p[i] = K[i] / N and
+ * the finite population correction c = (N - n) / (N - 1),
+ *
+ * mean[i] = n p[i],
+ *
+ * variance[i] = n p[i] (1 - p[i]) c, and
+ *
+ * covariance[i][j] = -n p[i] p[j] c, for i != j.
+ *
+ * The covariances are always negative, since every card drawn from one group is
+ * a card that didn't come from another. Groups' ranges don't matter here, only
+ * their sizes.
+ */
+public class DistributionSummary {
+
+	private final String[] names;
+	private final int n;
+	private final double[] mean;
+	private final double[] variance;
+	private final double[] standardDeviation;
+	// Row major, size() by size(). The diagonal holds the variances.
+	private final double[] covariance;
+
+	DistributionSummary(GroupSet groups, int n) {
+		final int size = groups.size();
+		final int N = groups.N;
+		this.names = groups.names;
+		this.n = n;
+		this.mean = new double[size];
+		this.variance = new double[size];
+		this.standardDeviation = new double[size];
+		this.covariance = new double[size * size];
+
+		// With one card or none in the deck, nothing can vary.
+		final double correction = N <= 1 ? 0 : (double) (N - n) / (double) (N - 1);
+		final double[] p = new double[size];
+		for (int i = 0; i < size; i++) {
+			p[i] = N == 0 ? 0 : (double) groups.K[i] / (double) N;
+			mean[i] = n * p[i];
+		}
+		for (int i = 0; i < size; i++) {
+			final double scale = n * p[i] * correction;
+			variance[i] = scale * (1 - p[i]);
+			standardDeviation[i] = Math.sqrt(variance[i]);
+			covariance[i * size + i] = variance[i];
+			// Each pair is only worked out once, so the matrix is exactly symmetric.
+			for (int j = i + 1; j < size; j++) {
+				covariance[i * size + j] = -scale * p[j];
+				covariance[j * size + i] = covariance[i * size + j];
+			}
+		}
+	}
+
+	/**
+	 * The number of groups.
+	 */
+	public int size() {
+		return mean.length;
+	}
+
+	public String getName(int group) {
+		return names[group];
+	}
+
+	public int getn() {
+		return n;
+	}
+
+	/**
+	 * The average number of cards drawn from the group.
+	 */
+	public double getMean(int group) {
+		return mean[group];
+	}
+
+	public double getVariance(int group) {
+		return variance[group];
+	}
+
+	public double getStandardDeviation(int group) {
+		return standardDeviation[group];
+	}
+
+	/**
+	 * The covariance between the number of cards drawn from two groups. The
+	 * covariance of a group with itself is its variance.
+	 */
+	public double getCovariance(int group1, int group2) {
+		return covariance[group1 * mean.length + group2];
+	}
+
+	/**
+	 * The correlation between the number of cards drawn from two groups, between
+	 * -1 and 1, or zero if either never varies.
+	 */
+	public double getCorrelation(int group1, int group2) {
+		final double denominator = standardDeviation[group1] * standardDeviation[group2];
+		return denominator == 0 ? 0 : getCovariance(group1, group2) / denominator;
+	}
+
+	/**
+	 * A copy of every group's mean.
+	 */
+	public double[] getMeans() {
+		return mean.clone();
+	}
+
+	/**
+	 * A copy of every group's variance.
+	 */
+	public double[] getVariances() {
+		return variance.clone();
+	}
+
+	/**
+	 * A copy of every group's standard deviation.
+	 */
+	public double[] getStandardDeviations() {
+		return standardDeviation.clone();
+	}
+
+	/**
+	 * A copy of the covariance matrix, flattened row by row, so entry (i, j) is at
+	 * i * size() + j.
+	 */
+	public double[] getCovarianceMatrix() {
+		return covariance.clone();
+	}
+
+}
@@ -0,0 +1,197 @@
+package statistics.hypergeo;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Hypergeometric probabilities by counting hands exactly, in 64 bit integers.
+ *
+ * A probability is the number of winning hands over the number of hands,
+ * C(N, n). For normal deck sizes both counts fit easily in a long. C(60, 7) is
+ * under 400 million, and C(100, 10) is under 2^44. Counting with longs is
+ * exact, and the only rounding is the one division at the very end, so the
+ * answer is the closest double to the true probability.
+ *
+ * Every multiplication is checked with {@link Math#multiplyHigh(long, long)},
+ * and every addition by its sign, since all the counts are positive. If
+ * anything would overflow, or the deck is bigger than
+ * {@link BinomialTables#EXACT_LIMIT}, these functions return NaN, and the
+ * caller falls back to the floating point engines.
+ */
+class ExactCounting {
+
+	/**
+	 * Protected Constructor for static method class
+	 */
+	protected ExactCounting() {
+	}
+
+	// Doubles hold every integer up to this exactly.
+	private static final long EXACT_DOUBLE = 1L << 53;
+
+	// Digits kept when a quotient has to go through BigDecimal. A few more than a
+	// double holds, so that rounding to a double afterwards is almost always
+	// correct.
+	private static final MathContext QUOTIENT = new MathContext(25);
+
+	/**
+	 * The univariate probability of between low and high successes, which must
+	 * already be within the support, or NaN if it can't be counted exactly.
+	 */
+	static double probability(int N, int K, int n, int low, int high) {
+		final long hands = BinomialTables.exactBinomial(N, n);
+		if (hands <= 0) {
+			return Double.NaN;
+		}
+		long wins = 0;
+		for (int k = low; k <= high; k++) {
+			final long successes = BinomialTables.exactBinomial(K, k);
+			final long failures = BinomialTables.exactBinomial(N - K, n - k);
+			if (successes < 0 || failures < 0) {
+				return Double.NaN;
+			}
+			wins = add(wins, multiply(successes, failures));
+			if (wins < 0) {
+				return Double.NaN;
+			}
+		}
+		return divide(wins, hands);
+	}
+
+	/**
+	 * Counts the hands with fewer than k successes into below[k], for every k from
+	 * 0 to n + 1, or returns -1 if they can't be counted exactly. below must have
+	 * room for n + 2 entries.
+	 *
+	 * The hands with between low and high successes are then below[high + 1] -
+	 * below[low], the same count that
+	 * {@link #probability(int, int, int, int, int)} adds up, so dividing it by the
+	 * returned number of hands gives the same answer, bit for bit.
+	 */
+	static long countHands(int N, int K, int n, long[] below) {
+		final long hands = BinomialTables.exactBinomial(N, n);
+		if (hands <= 0) {
+			return -1;
+		}
+		// Only the support is counted, so a binomial outside of it that doesn't fit
+		// in a long doesn't stop the rest from being exact.
+		final int supportMin = Math.max(0, n - (N - K));
+		final int supportMax = Math.min(n, K);
+		long wins = 0;
+		for (int k = 0; k <= supportMin; k++) {
+			below[k] = 0;
+		}
+		for (int k = supportMin; k <= supportMax; k++) {
+			final long successes = BinomialTables.exactBinomial(K, k);
+			final long failures = BinomialTables.exactBinomial(N - K, n - k);
+			if (successes < 0 || failures < 0) {
+				return -1;
+			}
+			wins = add(wins, multiply(successes, failures));
+			if (wins < 0) {
+				return -1;
+			}
+			below[k + 1] = wins;
+		}
+		for (int k = supportMax + 2; k <= n + 1; k++) {
+			below[k] = wins;
+		}
+		return hands;
+	}
+
+	/**
+	 * The multivariate probability that each group i draws between k1[i] and k2[i]
+	 * in a sample of n, or NaN if it can't be counted exactly.
+	 *
+	 * The same dynamic programming as {@link Convolution}, but the polynomial
+	 * coefficients are exact counts of hands instead of scaled doubles.
+	 */
+	static double probability(int N, int[] K, int[] k1, int[] k2, int n) {
+		final long hands = BinomialTables.exactBinomial(N, n);
+		if (hands <= 0) {
+			return Double.NaN;
+		}
+
+		long[] polynomial = new long[n + 1];
+		long[] next = new long[n + 1];
+		long[] weights = new long[n + 1];
+		polynomial[0] = 1;
+		int degree = 0;
+
+		for (int i = 0; i < K.length; i++) {
+			final int low = k1[i];
+			final int high = Math.min(Math.min(k2[i], K[i]), n);
+			if (low > high) {
+				return 0;
+			}
+			for (int j = low; j <= high; j++) {
+				weights[j] = BinomialTables.exactBinomial(K[i], j);
+				if (weights[j] < 0) {
+					return Double.NaN;
+				}
+			}
+
+			final int newDegree = Math.min(degree + high, n);
+			for (int m = 0; m <= newDegree; m++) {
+				next[m] = 0;
+			}
+			for (int m = 0; m <= degree; m++) {
+				final long coefficient = polynomial[m];
+				if (coefficient == 0) {
+					continue;
+				}
+				final int top = Math.min(high, n - m);
+				for (int j = low; j <= top; j++) {
+					final long sum = add(next[m + j], multiply(coefficient, weights[j]));
+					if (sum < 0) {
+						return Double.NaN;
+					}
+					next[m + j] = sum;
+				}
+			}
+
+			long[] swap = polynomial;
+			polynomial = next;
+			next = swap;
+			degree = newDegree;
+		}
+		return divide(polynomial[n], hands);
+	}
+
+	/**
+	 * The product of two counts, or -1 if it doesn't fit in a long.
+	 */
+	static long multiply(long a, long b) {
+		if (a < 0 || b < 0) {
+			return -1;
+		}
+		final long product = a * b;
+		if (Math.multiplyHigh(a, b) != 0 || product < 0) {
+			return -1;
+		}
+		return product;
+	}
+
+	/**
+	 * The sum of two counts, or -1 if either is -1 or it doesn't fit in a long.
+	 */
+	static long add(long a, long b) {
+		if (a < 0 || b < 0) {
+			return -1;
+		}
+		final long sum = a + b;
+		return sum < 0 ? -1 : sum;
+	}
+
+	/**
+	 * wins / hands, rounded once.
+	 */
+	static double divide(long wins, long hands) {
+		if (wins <= EXACT_DOUBLE && hands <= EXACT_DOUBLE) {
+			// Both convert exactly, and IEEE division rounds correctly.
+			return (double) wins / (double) hands;
+		}
+		return new BigDecimal(wins).divide(new BigDecimal(hands), QUOTIENT).doubleValue();
+	}
+
+}
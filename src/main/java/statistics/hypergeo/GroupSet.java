@@ -0,0 +1,166 @@
+package statistics.hypergeo;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable list of groups for the multivariate functions in
+ * {@link MultiHyperGeo}, stored as parallel primitive arrays rather than as a
+ * list of {@link Group} objects.
+ *
+ * Everything the calculations need is unpacked once, when the set is built:
+ * the sizes, minimums and maximums of every group, and the total population
+ * size. The arrays are never exposed outside of this package, so the hot loops
+ * can read them directly without copying or unboxing.
+ */
+public class GroupSet {
+
+	// Package-private so that the calculations can use them directly. Never
+	// modified after construction.
+	final String[] names;
+	final int[] K;
+	final int[] k1;
+	final int[] k2;
+	// The maximum of each group, capped at the size of the group. Drawing more
+	// than that is impossible anyway.
+	final int[] kmax;
+	final int N;
+
+	/**
+	 * Creates a set of groups. The arrays are copied.
+	 *
+	 * @param names
+	 *            The name of each group, used for display only.
+	 * @param K
+	 *            The number of cards in each group.
+	 * @param k1
+	 *            The minimum number of cards required from each group.
+	 * @param k2
+	 *            The maximum number of cards required from each group.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If the arrays are empty or of different lengths, or if for any
+	 *             group (K < 0 || k1 < 0 || k2 < 0), (k2 < k1), or (K < k1).
+	 */
+	public GroupSet(String[] names, int[] K, int[] k1, int[] k2) throws IllegalArgumentException {
+		final int size = K.length;
+		if (size == 0) {
+			throw new IllegalArgumentException("The group list must contain at least one group.");
+		}
+		if (names.length != size || k1.length != size || k2.length != size) {
+			throw new IllegalArgumentException(
+					"names, K, k1, and k2 must be the same size. Each should have one entry for each group.");
+		}
+
+		this.names = Arrays.copyOf(names, size);
+		this.K = Arrays.copyOf(K, size);
+		this.k1 = Arrays.copyOf(k1, size);
+		this.k2 = Arrays.copyOf(k2, size);
+		this.kmax = new int[size];
+
+		long population = 0;
+		for (int i = 0; i < size; i++) {
+			if (K[i] < 0 || k1[i] < 0 || k2[i] < 0) {
+				throw new IllegalArgumentException(
+						"All arguments must be greater than or equal to zero. Negative numbers don't make sense in this context.");
+			}
+			if (k2[i] < k1[i]) {
+				throw new IllegalArgumentException(
+						"k2 must be greater than or equal to k1. k1 is the minimum number of successes, and k2 is the maximum.");
+			}
+			if (K[i] < k1[i]) {
+				throw new IllegalArgumentException(
+						"The minimum number of successes required cannot be greater than the number which exist in the deck.");
+			}
+			kmax[i] = Math.min(k2[i], K[i]);
+			population += K[i];
+		}
+		if (population > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("There are too many cards in the deck.");
+		}
+		this.N = (int) population;
+	}
+
+	/**
+	 * Creates a set of unnamed groups. The arrays are copied.
+	 *
+	 * @see #GroupSet(String[], int[], int[], int[])
+	 */
+	public GroupSet(int[] K, int[] k1, int[] k2) throws IllegalArgumentException {
+		this(emptyNames(K.length), K, k1, k2);
+	}
+
+	/**
+	 * Unpacks a list of groups.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If the list is empty, or any group is invalid.
+	 */
+	public static GroupSet of(List<Group> glist) throws IllegalArgumentException {
+		final int size = glist.size();
+		String[] names = new String[size];
+		int[] K = new int[size];
+		int[] k1 = new int[size];
+		int[] k2 = new int[size];
+		for (int i = 0; i < size; i++) {
+			Group g = glist.get(i);
+			names[i] = g.getName();
+			K[i] = g.getK();
+			k1[i] = g.getk1();
+			k2[i] = g.getk2();
+		}
+		return new GroupSet(names, K, k1, k2);
+	}
+
+	private static String[] emptyNames(int size) {
+		String[] names = new String[size];
+		Arrays.fill(names, "");
+		return names;
+	}
+
+	/********************************/
+	/* Accessors                    */
+	/********************************/
+
+	/**
+	 * The number of groups.
+	 */
+	public int size() {
+		return K.length;
+	}
+
+	/**
+	 * The total population size, the sum of K over every group.
+	 */
+	public int getN() {
+		return N;
+	}
+
+	public String getName(int group) {
+		return names[group];
+	}
+
+	public int getK(int group) {
+		return K[group];
+	}
+
+	public int getk1(int group) {
+		return k1[group];
+	}
+
+	public int getk2(int group) {
+		return k2[group];
+	}
+
+	/**
+	 * The largest of k1 over every group. No sample smaller than this can succeed.
+	 */
+	public int maxk1() {
+		int max = 0;
+		for (int i = 0; i < k1.length; i++) {
+			max = Math.max(max, k1[i]);
+		}
+		return max;
+	}
+
+}
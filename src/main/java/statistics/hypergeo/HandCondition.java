@@ -0,0 +1,46 @@
+package statistics.hypergeo;
+
+/**
+ * Decides whether a simulated hand is a success, for {@link MonteCarlo}.
+ *
+ * Simulation can answer questions the exact functions can't, because a
+ * condition sees the actual cards drawn and the order they came in, not just
+ * how many came from each group. For example, "a tutor in the first seven
+ * cards, and the card it finds anywhere in the top fifteen", or "at least two
+ * lands, counting a scry as seeing one card deeper".
+ */
+@FunctionalInterface
+public interface HandCondition {
+
+	/**
+	 * @param cards
+	 *            The group index of each card, in the order they were drawn. Only
+	 *            the first handSize entries are the hand. Don't modify it.
+	 * @param handSize
+	 *            The number of cards drawn.
+	 * @param counts
+	 *            How many of the hand's cards came from each group. Don't modify
+	 *            it.
+	 *
+	 * @return Whether the hand is a success.
+	 */
+	boolean test(int[] cards, int handSize, int[] counts);
+
+	/**
+	 * The usual condition: every group is within its range. Simulating with this
+	 * estimates {@link MultiHyperGeo#probability(GroupSet, int)}.
+	 */
+	static HandCondition of(GroupSet groups) {
+		final int[] k1 = groups.k1;
+		final int[] k2 = groups.k2;
+		return (cards, handSize, counts) -> {
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] < k1[i] || counts[i] > k2[i]) {
+					return false;
+				}
+			}
+			return true;
+		};
+	}
+
+}
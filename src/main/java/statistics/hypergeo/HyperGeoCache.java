@@ -0,0 +1,438 @@
+package statistics.hypergeo;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A bounded, thread safe cache of probabilities, in front of
+ * {@link UniHyperGeo#probability(int, int, int, int, int)} and
+ * {@link MultiHyperGeo#probability(GroupSet, int)}.
+ *
+ * Queries are keyed by their arguments packed into an array of longs, with
+ * each maximum clamped to what can actually be drawn, so asking for
+ * "between 2 and 7" and "between 2 and 60" lands in seven cards share an entry.
+ * Multivariate queries are keyed by their {@link Canonicalizer canonical} form,
+ * so the order of the groups and how the other cards are split up don't matter
+ * either.
+ *
+ * Lookups never lock. When the cache grows past its bound, whichever thread
+ * noticed evicts entries with the clock algorithm: it sweeps round the table
+ * from wherever the last sweep stopped, giving every entry that's been used
+ * since then a second chance, and removing the first one that hasn't. That's
+ * only an approximation of least recently used, but it costs next to nothing
+ * on a hit. If another thread is already evicting, nobody waits for it, so the
+ * cache can briefly hold a few entries more than its bound.
+ *
+ * When the same question is asked many times at once, only the first miss
+ * calculates it. The others find it in progress and wait for that answer
+ * instead of starting their own. Callers that don't want to tie up a thread
+ * just to wait, like commands handing work to a small compute pool, use the
+ * {@link #probabilityAsync(GroupSet, int, Executor) async} versions instead.
+ * Those only give the executor a miss that nobody else is calculating, and
+ * return a future to wait on from wherever suits the caller.
+ */
+public class HyperGeoCache {
+
+	/**
+	 * The number of entries {@link #getDefault()} holds.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 1 << 14;
+
+	private static final HyperGeoCache DEFAULT = new HyperGeoCache(DEFAULT_MAX_ENTRIES);
+
+	// Tags the first int of every key, so that keys of different kinds never
+	// compare equal.
+	private static final int UNIVARIATE = 1;
+	private static final int MULTIVARIATE = 2;
+
+	private final int maxEntries;
+	private final ConcurrentHashMap<Key, Entry> entries;
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	// Where the clock hand is. Only used while holding evictionLock.
+	private Iterator<Map.Entry<Key, Entry>> hand;
+	// The probabilities being calculated right now, so that a query that's
+	// already in progress is waited for instead of calculated again.
+	private final ConcurrentHashMap<Key, CompletableFuture<Double>> inProgress = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder shared = new LongAdder();
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param maxEntries
+	 *            The number of probabilities to keep.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If (maxEntries < 1).
+	 */
+	public HyperGeoCache(int maxEntries) throws IllegalArgumentException {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("The cache must be able to hold at least one entry.");
+		}
+		this.maxEntries = maxEntries;
+		this.entries = new ConcurrentHashMap<>(Math.min(maxEntries, 1 << 16) * 4 / 3 + 1);
+	}
+
+	/**
+	 * The cache shared by everything that doesn't need one of its own.
+	 */
+	public static HyperGeoCache getDefault() {
+		return DEFAULT;
+	}
+
+	/********************************/
+	/* Probability Functions        */
+	/********************************/
+
+	/**
+	 * The same as {@link UniHyperGeo#probability(int, int, int, int, int)}, but
+	 * remembered.
+	 */
+	public double probability(int N, int K, int n, int k1, int k2) throws IllegalArgumentException {
+		UniHyperGeo.verifyProbabilityArgs(N, K, n, k1, k2);
+
+		final Key key = univariateKey(N, K, n, k1, k2);
+		final Entry cached = lookup(key);
+		if (cached != null) {
+			return cached.value;
+		}
+		return calculate(key, () -> UniHyperGeo.unverifiedProbability(N, K, n, k1, k2));
+	}
+
+	/**
+	 * The same as {@link MultiHyperGeo#probability(GroupSet, int)}, but
+	 * remembered.
+	 */
+	public double probability(GroupSet groups, int n) throws IllegalArgumentException {
+		MultiHyperGeo.verifyProbabilityArgs(groups, n);
+
+		// Every way of asking the same question shares one entry.
+		final GroupSet canonical = Canonicalizer.canonicalize(groups, n);
+		if (canonical == null) {
+			return 0;
+		}
+		final Key key = multivariateKey(canonical, n);
+		final Entry cached = lookup(key);
+		if (cached != null) {
+			return cached.value;
+		}
+		return calculate(key, () -> MultiHyperGeo.unverifiedProbability(canonical, n, ProbabilityEngine.AUTO, true));
+	}
+
+	/**
+	 * See {@link #probability(GroupSet, int)}.
+	 */
+	public double probability(List<Group> glist, int n) throws IllegalArgumentException {
+		return probability(GroupSet.of(glist), n);
+	}
+
+	/**
+	 * The same as {@link #probability(int, int, int, int, int)}, but a miss is
+	 * calculated by the executor, and the calling thread gets a future to wait on
+	 * however it likes.
+	 *
+	 * If the same probability is already being calculated, the future is for that
+	 * calculation, and nothing is handed to the executor. So only one of its
+	 * threads is ever busy with a given question, and none of them just waits.
+	 *
+	 * @throws IllegalArgumentException
+	 *             Straight away, for the same reasons as the synchronous version.
+	 */
+	public CompletableFuture<Double> probabilityAsync(int N, int K, int n, int k1, int k2, Executor executor)
+			throws IllegalArgumentException {
+		UniHyperGeo.verifyProbabilityArgs(N, K, n, k1, k2);
+
+		return calculateAsync(univariateKey(N, K, n, k1, k2),
+				() -> UniHyperGeo.unverifiedProbability(N, K, n, k1, k2), executor);
+	}
+
+	/**
+	 * The same as {@link #probability(GroupSet, int)}, but calculated by the
+	 * executor. See {@link #probabilityAsync(int, int, int, int, int, Executor)}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             Straight away, for the same reasons as the synchronous version.
+	 */
+	public CompletableFuture<Double> probabilityAsync(GroupSet groups, int n, Executor executor)
+			throws IllegalArgumentException {
+		MultiHyperGeo.verifyProbabilityArgs(groups, n);
+
+		final GroupSet canonical = Canonicalizer.canonicalize(groups, n);
+		if (canonical == null) {
+			return CompletableFuture.completedFuture(0d);
+		}
+		return calculateAsync(multivariateKey(canonical, n),
+				() -> MultiHyperGeo.unverifiedProbability(canonical, n, ProbabilityEngine.AUTO, true), executor);
+	}
+
+	// Anything above what can be drawn means the same as the most that can be.
+	private static Key univariateKey(int N, int K, int n, int k1, int k2) {
+		return new Key(new int[] { UNIVARIATE, N, K, n, k1, Math.min(k2, Math.min(K, n)) });
+	}
+
+	private static Key multivariateKey(GroupSet canonical, int n) {
+		final int size = canonical.size();
+		final int[] values = new int[2 + 3 * size];
+		values[0] = MULTIVARIATE;
+		values[1] = n;
+		for (int i = 0; i < size; i++) {
+			values[2 + 3 * i] = canonical.K[i];
+			values[3 + 3 * i] = canonical.k1[i];
+			values[4 + 3 * i] = canonical.kmax[i];
+		}
+		return new Key(values);
+	}
+
+	private Entry lookup(Key key) {
+		final Entry entry = entries.get(key);
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		if (!entry.referenced) {
+			entry.referenced = true;
+		}
+		return entry;
+	}
+
+	/**
+	 * Calculates and stores a probability that wasn't found, unless another thread
+	 * is already calculating it, in which case this waits for its answer.
+	 */
+	private double calculate(Key key, DoubleSupplier probability) {
+		final CompletableFuture<Double> mine = new CompletableFuture<>();
+		final CompletableFuture<Double> running = inProgress.putIfAbsent(key, mine);
+		if (running != null) {
+			shared.increment();
+			try {
+				return running.join();
+			} catch (CompletionException e) {
+				// Whatever went wrong for that thread would've gone wrong here too.
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw e;
+			}
+		}
+		return complete(key, mine, probability);
+	}
+
+	/**
+	 * Looks up a probability, and if it isn't there, has the executor calculate
+	 * and store it, unless something is already calculating it, in which case
+	 * that calculation's future is returned instead.
+	 */
+	private CompletableFuture<Double> calculateAsync(Key key, DoubleSupplier probability, Executor executor) {
+		final Entry cached = lookup(key);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached.value);
+		}
+		final CompletableFuture<Double> mine = new CompletableFuture<>();
+		final CompletableFuture<Double> running = inProgress.putIfAbsent(key, mine);
+		if (running != null) {
+			shared.increment();
+			return running;
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					complete(key, mine, probability);
+				} catch (RuntimeException | Error e) {
+					// Already passed on to everyone waiting, through the future.
+				}
+			});
+		} catch (RuntimeException e) {
+			// Most likely a RejectedExecutionException. Nobody will calculate it, so
+			// nobody may wait for it.
+			inProgress.remove(key, mine);
+			mine.completeExceptionally(e);
+		}
+		return mine;
+	}
+
+	/**
+	 * Calculates and stores the probability for the thread that claimed it in
+	 * inProgress, and completes its future for everyone else waiting.
+	 */
+	private double complete(Key key, CompletableFuture<Double> mine, DoubleSupplier probability) {
+		try {
+			// It might have been stored between the lookup and now.
+			final Entry stored = entries.get(key);
+			final double value = stored != null ? stored.value : store(key, probability.getAsDouble());
+			mine.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			inProgress.remove(key, mine);
+		}
+	}
+
+	private double store(Key key, double value) {
+		// If another thread calculated the same thing in the meantime, both got the
+		// same answer, so it doesn't matter whose is kept.
+		entries.putIfAbsent(key, new Entry(value));
+		if (entries.size() > maxEntries) {
+			evict();
+		}
+		return value;
+	}
+
+	private void evict() {
+		if (!evictionLock.tryLock()) {
+			return;
+		}
+		try {
+			// Going twice round the table is enough to find an entry that hasn't been
+			// used, since the first pass clears every reference bit it passes.
+			long budget = 2L * entries.size() + 2;
+			while (entries.size() > maxEntries && budget-- > 0) {
+				if (hand == null || !hand.hasNext()) {
+					hand = entries.entrySet().iterator();
+					if (!hand.hasNext()) {
+						return;
+					}
+				}
+				final Map.Entry<Key, Entry> candidate = hand.next();
+				final Entry entry = candidate.getValue();
+				if (entry.referenced) {
+					entry.referenced = false;
+				} else if (entries.remove(candidate.getKey(), entry)) {
+					evictions.increment();
+				}
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Forgets every entry. The counters are left alone.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/********************************/
+	/* Metrics                      */
+	/********************************/
+
+	/**
+	 * The number of entries currently held.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * The number of lookups that found an entry.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * The number of lookups that had to calculate the probability.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * The number of misses that waited for another thread calculating the same
+	 * probability, instead of calculating it again. These are counted as misses
+	 * too.
+	 */
+	public long getSharedCount() {
+		return shared.sum();
+	}
+
+	/**
+	 * The number of entries removed to stay within the bound.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * The fraction of lookups that found an entry, or zero if there haven't been
+	 * any.
+	 */
+	public double getHitRate() {
+		final long hitCount = hits.sum();
+		final long total = hitCount + misses.sum();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("HyperGeoCache[size=%d/%d, hits=%d, misses=%d, shared=%d, evictions=%d, hitRate=%.3f]",
+				size(), maxEntries, getHitCount(), getMissCount(), getSharedCount(), getEvictionCount(), getHitRate());
+	}
+
+	/********************************/
+	/* Keys and Entries             */
+	/********************************/
+
+	/**
+	 * The arguments of a query, packed two to a long.
+	 */
+	private static final class Key {
+
+		private final long[] words;
+		private final int hash;
+
+		Key(int[] values) {
+			words = new long[(values.length + 1) / 2];
+			for (int i = 0; i < values.length; i++) {
+				words[i >> 1] |= (values[i] & 0xFFFFFFFFL) << ((i & 1) << 5);
+			}
+			hash = Arrays.hashCode(words);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return this == o || (o instanceof Key && hash == ((Key) o).hash && Arrays.equals(words, ((Key) o).words));
+		}
+
+	}
+
+	private static final class Entry {
+
+		final double value;
+		// Set on every hit, and cleared as the clock hand passes.
+		volatile boolean referenced;
+
+		Entry(double value) {
+			this.value = value;
+		}
+
+	}
+
+}
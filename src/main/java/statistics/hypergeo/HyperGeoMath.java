@@ -0,0 +1,185 @@
+package statistics.hypergeo;
+
+/**
+ * Log-space evaluation of hypergeometric probabilities.
+ *
+ * Rather than multiplying and dividing binomial coefficients directly, which
+ * overflows a double somewhere around C(1030, 515), every term is written as a
+ * ratio of binomial probabilities and evaluated with Loader's saddle point
+ * expansion. Each of those pieces stays small no matter how large the deck is,
+ * so nothing overflows, the cancellation between huge log factorials never
+ * happens, and the result keeps close to full double precision even for
+ * populations in the millions. Only the final answer is exponentiated.
+ *
+ * Small populations, which is to say nearly all real decks, skip all of that
+ * and read their binomial coefficients straight out of {@link BinomialTables}.
+ *
+ * See Catherine Loader, "Fast and Accurate Computation of Binomial
+ * Probabilities" (2000).
+ */
+class HyperGeoMath {
+
+	/**
+	 * Protected Constructor for static method class
+	 */
+	protected HyperGeoMath() {
+	}
+
+	private static final double HALF_LOG_TWO_PI = 0.5 * Math.log(2 * Math.PI);
+
+	// Exact Stirling errors for small integers. Past this the asymptotic series is
+	// accurate to full double precision.
+	private static final int STIRLING_TABLE_SIZE = 16;
+	private static final double[] STIRLING_ERRORS = new double[STIRLING_TABLE_SIZE];
+	static {
+		double logFactorial = 0;
+		STIRLING_ERRORS[0] = 0;
+		for (int z = 1; z < STIRLING_TABLE_SIZE; z++) {
+			logFactorial += Math.log(z);
+			STIRLING_ERRORS[z] = logFactorial - (z + 0.5) * Math.log(z) + z - HALF_LOG_TWO_PI;
+		}
+	}
+
+	/********************************/
+	/* Hypergeometric Terms         */
+	/********************************/
+
+	/**
+	 * The natural log of the Univariate Hypergeometric Probability Mass Function.
+	 * Arguments are assumed to have already been verified by the caller, apart
+	 * from k, which may fall outside of the support.
+	 *
+	 * @return The log of the probability of exactly k successes, or negative
+	 *         infinity if k is impossible.
+	 */
+	static double logPmf(int N, int K, int n, int k) {
+		if (k < 0 || k > K || k > n || n - k > N - K) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		if (N == 0) {
+			return 0;
+		}
+		if (N <= BinomialTables.EXACT_LIMIT) {
+			return Math.log(BinomialTables.binomial(K, k) * BinomialTables.binomial(N - K, n - k)
+					/ BinomialTables.binomial(N, n));
+		}
+		if (N <= BinomialTables.LOG_FACTORIAL_PMF_LIMIT) {
+			return BinomialTables.logBinomial(K, k) + BinomialTables.logBinomial(N - K, n - k)
+					- BinomialTables.logBinomial(N, n);
+		}
+		final double p = (double) n / (double) N;
+		final double q = (double) (N - n) / (double) N;
+		return logBinomialProbability(k, K, p, q) + logBinomialProbability(n - k, N - K, p, q)
+				- logBinomialProbability(n, N, p, q);
+	}
+
+	/**
+	 * The natural log of the Multivariate Hypergeometric Probability Mass Function,
+	 * the product of C(K[i], k[i]) over C(N, n). Arguments are assumed to have
+	 * already been verified by the caller, and the k must sum to n.
+	 *
+	 * @return The log of the probability of drawing exactly k[i] of every group i,
+	 *         or negative infinity if that is impossible.
+	 */
+	static double logPmf(int N, int[] K, int n, int[] k) {
+		final int size = K.length;
+		for (int i = 0; i < size; i++) {
+			if (k[i] < 0 || k[i] > K[i]) {
+				return Double.NEGATIVE_INFINITY;
+			}
+		}
+		if (N == 0) {
+			return 0;
+		}
+		if (N <= BinomialTables.EXACT_LIMIT) {
+			// No partial product can be larger than C(N, n), so this can't overflow.
+			double numerator = 1;
+			for (int i = 0; i < size; i++) {
+				numerator *= BinomialTables.binomial(K[i], k[i]);
+			}
+			return Math.log(numerator / BinomialTables.binomial(N, n));
+		}
+		if (N <= BinomialTables.LOG_FACTORIAL_PMF_LIMIT) {
+			double logProbability = -BinomialTables.logBinomial(N, n);
+			for (int i = 0; i < size; i++) {
+				logProbability += BinomialTables.logBinomial(K[i], k[i]);
+			}
+			return logProbability;
+		}
+
+		// Multiplying every C(K[i], k[i]) and C(N, n) by p^n * q^(N - n) turns each of
+		// them into a binomial probability, and the extra factors cancel out.
+		final double p = (double) n / (double) N;
+		final double q = (double) (N - n) / (double) N;
+		double logProbability = -logBinomialProbability(n, N, p, q);
+		for (int i = 0; i < size; i++) {
+			logProbability += logBinomialProbability(k[i], K[i], p, q);
+		}
+		return logProbability;
+	}
+
+	/********************************/
+	/* Saddle Point Expansion       */
+	/********************************/
+
+	/**
+	 * The log of the binomial probability of x successes in n trials, each with
+	 * probability p of success and q = 1 - p of failure.
+	 */
+	static double logBinomialProbability(int x, int n, double p, double q) {
+		if (n == 0) {
+			return x == 0 ? 0 : Double.NEGATIVE_INFINITY;
+		}
+		if (x == 0) {
+			return p < 0.1 ? -deviance(n, n * q) - n * p : n * Math.log(q);
+		}
+		if (x == n) {
+			return q < 0.1 ? -deviance(n, n * p) - n * q : n * Math.log(p);
+		}
+		final double logProbability = stirlingError(n) - stirlingError(x) - stirlingError(n - x)
+				- deviance(x, n * p) - deviance(n - x, n * q);
+		final double f = (2 * Math.PI * x * (n - x)) / n;
+		return -0.5 * Math.log(f) + logProbability;
+	}
+
+	/**
+	 * The error in Stirling's approximation of log(z!), that is log(z!) - (z + 0.5)
+	 * * log(z) + z - log(2 * pi) / 2.
+	 */
+	static double stirlingError(int z) {
+		if (z < STIRLING_TABLE_SIZE) {
+			return STIRLING_ERRORS[z];
+		}
+		final double z2 = (double) z * z;
+		return (0.083333333333333333333 - (0.00277777777777777777778 - (0.00079365079365079365079365
+				- (0.000595238095238095238095238 - 0.0008417508417508417508417508 / z2) / z2) / z2) / z2) / z;
+	}
+
+	/**
+	 * The deviance term x * log(x / mu) + mu - x, computed without cancellation
+	 * when x and mu are close together.
+	 */
+	static double deviance(double x, double mu) {
+		if (Math.abs(x - mu) < 0.1 * (x + mu)) {
+			final double d = x - mu;
+			double v = d / (x + mu);
+			double s1 = v * d;
+			double s = Double.NaN;
+			double ej = 2.0 * x * v;
+			v = v * v;
+			int j = 1;
+			while (s1 != s) {
+				s = s1;
+				ej *= v;
+				s1 = s + ej / ((j * 2) + 1);
+				++j;
+			}
+			return s1;
+		}
+		if (x == 0) {
+			return mu;
+		}
+		return x * Math.log(x / mu) + mu - x;
+	}
+
+}
@@ -0,0 +1,214 @@
+package statistics.hypergeo;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveTask;
+
+import statistics.StatisticsPool;
+
+/**
+ * Estimates probabilities by dealing a lot of random hands, for questions that
+ * are too big to calculate exactly or don't fit the hypergeometric model at
+ * all. See {@link HandCondition}.
+ *
+ * The deck is an array holding the group index of every card. Each hand is a
+ * partial shuffle that only moves the cards actually drawn into place. Hands
+ * are dealt in batches of {@link #BATCH_SIZE}, every batch with its own random
+ * number generator seeded from the simulation's seed and the batch's number.
+ * Rounds of {@link #ROUND_BATCHES} batches run in parallel on the
+ * {@link StatisticsPool}, and after each round the simulation stops if the
+ * confidence interval is narrow enough. Since neither the seeds nor the rounds
+ * depend on which thread runs what, or on how many cores there are, the same
+ * seed always gives exactly the same result.
+ */
+public class MonteCarlo {
+
+	/**
+	 * Protected Constructor for static method class
+	 */
+	protected MonteCarlo() {
+	}
+
+	/**
+	 * The number of hands dealt with each random number generator.
+	 */
+	public static final int BATCH_SIZE = 1 << 13;
+
+	/**
+	 * The number of batches between checks of the confidence interval.
+	 */
+	public static final int ROUND_BATCHES = 16;
+
+	// The z value of a two sided 95% confidence interval.
+	private static final double Z = 1.959963984540054;
+
+	/**
+	 * Estimates the probability that every group is within its range in a sample
+	 * of n. The same as {@link MultiHyperGeo#probability(GroupSet, int)}, but
+	 * simulated.
+	 *
+	 * @see #simulate(GroupSet, int, HandCondition, double, long, long)
+	 */
+	public static SimulationResult simulate(GroupSet groups, int n, double halfWidth, long maxSamples, long seed)
+			throws IllegalArgumentException {
+		return simulate(groups, n, HandCondition.of(groups), halfWidth, maxSamples, seed);
+	}
+
+	/**
+	 * Estimates the probability that a hand of n cards, dealt from a deck made of
+	 * the given groups, satisfies the condition. Only the sizes of the groups are
+	 * used to build the deck. Their ranges only matter if the condition uses them.
+	 *
+	 * @param groups
+	 *            The cards in the deck.
+	 * @param n
+	 *            The number of cards dealt.
+	 * @param condition
+	 *            Decides whether a hand is a success. It's called from several
+	 *            threads at once, so it must not keep any state between calls.
+	 * @param halfWidth
+	 *            Stop once the 95% confidence interval is this narrow on either
+	 *            side of the estimate.
+	 * @param maxSamples
+	 *            Stop after about this many hands no matter what. The count is
+	 *            rounded up to a whole number of batches.
+	 * @param seed
+	 *            The same seed always gives the same result.
+	 *
+	 * @return result The estimate and its confidence interval.
+	 *
+	 * @throws IllegalArgumentException
+	 *             When (n < 0), (N < n), (halfWidth <= 0), or (maxSamples < 1).
+	 */
+	public static SimulationResult simulate(GroupSet groups, int n, HandCondition condition, double halfWidth,
+			long maxSamples, long seed) throws IllegalArgumentException {
+		if (n < 0) {
+			throw new IllegalArgumentException(
+					"All arguments must be greater than or equal to zero. Negative numbers don't make sense in this context.");
+		}
+		if (groups.N < n) {
+			throw new IllegalArgumentException(
+					"N must be greater than or equal to n. You cannot look at more cards without replacement than are in the deck.");
+		}
+		if (!(halfWidth > 0)) {
+			throw new IllegalArgumentException("The confidence interval's half width must be greater than zero.");
+		}
+		if (maxSamples < 1) {
+			throw new IllegalArgumentException("There must be at least one sample.");
+		}
+
+		final long start = System.nanoTime();
+		final int[] deck = new int[groups.N];
+		int next = 0;
+		for (int i = 0; i < groups.size(); i++) {
+			for (int j = 0; j < groups.K[i]; j++) {
+				deck[next++] = i;
+			}
+		}
+
+		final long maxBatches = (maxSamples + BATCH_SIZE - 1) / BATCH_SIZE;
+		long batches = 0;
+		long successes = 0;
+		double[] interval;
+		do {
+			final long round = Math.min(ROUND_BATCHES, maxBatches - batches);
+			successes += StatisticsPool
+					.invoke(new BatchTask(deck, groups.size(), n, condition, seed, batches, batches + round));
+			batches += round;
+			interval = wilson(successes, batches * BATCH_SIZE);
+		} while (batches < maxBatches && (interval[1] - interval[0]) / 2 > halfWidth);
+
+		return new SimulationResult(batches * BATCH_SIZE, successes, interval[0], interval[1],
+				System.nanoTime() - start);
+	}
+
+	/**
+	 * The Wilson score interval, which unlike the usual normal approximation
+	 * behaves near zero and one, where a lot of the interesting questions are.
+	 */
+	static double[] wilson(long successes, long samples) {
+		final double p = (double) successes / samples;
+		final double z2n = Z * Z / samples;
+		final double center = (p + z2n / 2) / (1 + z2n);
+		final double spread = Z * Math.sqrt(p * (1 - p) / samples + z2n / (4 * samples)) / (1 + z2n);
+		return new double[] { Math.max(0, center - spread), Math.min(1, center + spread) };
+	}
+
+	/**
+	 * Deals every hand of one batch, and counts the successes.
+	 */
+	static long runBatch(int[] deck, int groupCount, int n, HandCondition condition, long seed, long batch) {
+		final SplittableRandom random = new SplittableRandom(mix(seed, batch));
+		final int[] cards = deck.clone();
+		final int[] counts = new int[groupCount];
+		final int N = cards.length;
+		long successes = 0;
+		for (int s = 0; s < BATCH_SIZE; s++) {
+			// Partial Fisher-Yates. Whatever order the last hand left the deck in, this
+			// picks a uniformly random hand.
+			for (int i = 0; i < n; i++) {
+				final int j = i + random.nextInt(N - i);
+				final int card = cards[j];
+				cards[j] = cards[i];
+				cards[i] = card;
+				counts[card]++;
+			}
+			if (condition.test(cards, n, counts)) {
+				successes++;
+			}
+			for (int i = 0; i < n; i++) {
+				counts[cards[i]]--;
+			}
+		}
+		return successes;
+	}
+
+	/**
+	 * A well spread seed for each batch, so that neighbouring batch numbers don't
+	 * give related streams.
+	 */
+	private static long mix(long seed, long batch) {
+		long z = seed + (batch + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Runs a range of batches, splitting it in half while there's more than one.
+	 */
+	@SuppressWarnings("serial")
+	private static class BatchTask extends RecursiveTask<Long> {
+
+		private final int[] deck;
+		private final int groupCount;
+		private final int n;
+		private final HandCondition condition;
+		private final long seed;
+		private final long from;
+		private final long to;
+
+		BatchTask(int[] deck, int groupCount, int n, HandCondition condition, long seed, long from, long to) {
+			this.deck = deck;
+			this.groupCount = groupCount;
+			this.n = n;
+			this.condition = condition;
+			this.seed = seed;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Long compute() {
+			if (to - from == 1) {
+				return runBatch(deck, groupCount, n, condition, seed, from);
+			}
+			final long middle = (from + to) >>> 1;
+			BatchTask left = new BatchTask(deck, groupCount, n, condition, seed, from, middle);
+			left.fork();
+			final long right = new BatchTask(deck, groupCount, n, condition, seed, middle, to).compute();
+			return right + left.join();
+		}
+
+	}
+
+}
@@ -0,0 +1,27 @@
+package statistics.hypergeo;
+
+/**
+ * The mulligan rules a {@link MulliganTable} compares.
+ */
+public enum MulliganRule {
+
+	/**
+	 * Each mulligan draws one card fewer, then scries one. See
+	 * {@link UniHyperGeo#probabilityOnVancouverMullToX(int, int, int, int, int)}.
+	 */
+	VANCOUVER,
+
+	/**
+	 * Each mulligan draws one card fewer. See
+	 * {@link UniHyperGeo#probabilityOnParisMullToX(int, int, int, int, int)}.
+	 */
+	PARIS,
+
+	/**
+	 * Each mulligan draws seven again, then bottoms one card for every mulligan
+	 * taken. See
+	 * {@link UniHyperGeo#probabilityOnLondonMullToX(int, int, int, int, int)}.
+	 */
+	LONDON
+
+}
@@ -0,0 +1,107 @@
+package statistics.hypergeo;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * The probability of a success under every mulligan rule, for every X, with
+ * and without a free mulligan, all at once.
+ *
+ * Every mulligan function is built out of the probability of a success in a
+ * hand of each size, and they all ask for the same few sizes. A table asks for
+ * each hand size from 0 to {@link #MAX_HAND_SIZE} exactly once, and works out
+ * every entry from those. Made by
+ * {@link MultiHyperGeo#mulliganTable(GroupSet)},
+ * {@link UniHyperGeo#mulliganTable(int, int, int, int)}, or the compiled
+ * queries.
+ */
+public class MulliganTable {
+
+	/**
+	 * The hand size every rule starts from.
+	 */
+	public static final int STARTING_HAND_SIZE = 7;
+
+	/**
+	 * The largest hand size the table holds the probability of, an opening hand
+	 * plus the first draw.
+	 */
+	public static final int MAX_HAND_SIZE = 8;
+
+	private final double[] probabilityOfHand;
+	// [rule][0 without a free mulligan, 1 with][X]
+	private final double[][][] table;
+
+	/**
+	 * @param probabilityOfHand
+	 *            Gives the probability of a success in a hand of each size. It's
+	 *            asked once for each size from k1 up to the smaller of N and
+	 *            {@link #MAX_HAND_SIZE}.
+	 * @param k1
+	 *            The fewest cards a success needs. Smaller hands always fail.
+	 * @param N
+	 *            The number of cards in the deck. Bigger hands can't be drawn.
+	 */
+	MulliganTable(IntToDoubleFunction probabilityOfHand, int k1, int N) {
+		this.probabilityOfHand = new double[MAX_HAND_SIZE + 1];
+		for (int h = 0; h <= MAX_HAND_SIZE; h++) {
+			if (h > N) {
+				this.probabilityOfHand[h] = Double.NaN;
+			} else if (h >= k1) {
+				this.probabilityOfHand[h] = probabilityOfHand.applyAsDouble(h);
+			}
+		}
+
+		final IntToDoubleFunction lookup = h -> this.probabilityOfHand[h];
+		final MulliganRule[] rules = MulliganRule.values();
+		table = new double[rules.length][2][STARTING_HAND_SIZE + 1];
+		final double sevens = lookup.applyAsDouble(STARTING_HAND_SIZE);
+		for (int X = 0; X <= STARTING_HAND_SIZE; X++) {
+			for (MulliganRule rule : rules) {
+				final double[][] entry = table[rule.ordinal()];
+				switch (rule) {
+				case VANCOUVER:
+				case PARIS:
+					entry[0][X] = UniHyperGeo.calculateProbabilityOnGeneralMullToX(lookup, X, k1,
+							rule == MulliganRule.VANCOUVER, STARTING_HAND_SIZE);
+					entry[1][X] = 1 - ((1 - entry[0][X]) * (1 - sevens));
+					break;
+				case LONDON:
+					entry[0][X] = UniHyperGeo.calculateProbabilityOnLondonMullToX(lookup, X, k1, STARTING_HAND_SIZE);
+					entry[1][X] = UniHyperGeo.calculateProbabilityOnLondonMullToXWithFree(lookup, X, k1,
+							STARTING_HAND_SIZE);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The probability of a success when mulliganing to X under the given rule.
+	 * The same as the matching probabilityOn...MullToX() function.
+	 *
+	 * @throws IllegalArgumentException
+	 *             When (X < 0 || X > 7).
+	 */
+	public double probability(MulliganRule rule, boolean withFree, int X) throws IllegalArgumentException {
+		if (X < 0 || X > STARTING_HAND_SIZE) {
+			throw new IllegalArgumentException(
+					"X must be between 0 and 7. You cannot mull down to more cards than you start with.");
+		}
+		return table[rule.ordinal()][withFree ? 1 : 0][X];
+	}
+
+	/**
+	 * The probability of a success in a single hand of the given size, without
+	 * any mulligans. NaN if the deck doesn't have that many cards.
+	 *
+	 * @throws IllegalArgumentException
+	 *             When (handSize < 0 || handSize > 8).
+	 */
+	public double probabilityOfHand(int handSize) throws IllegalArgumentException {
+		if (handSize < 0 || handSize > MAX_HAND_SIZE) {
+			throw new IllegalArgumentException("The hand size must be between 0 and " + MAX_HAND_SIZE + ".");
+		}
+		return probabilityOfHand[handSize];
+	}
+
+}
@@ -1,13 +1,8 @@
 package statistics.hypergeo;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import org.apache.commons.math3.util.CombinatoricsUtils;
 
+import statistics.StatisticsPool;
 import statistics.hypergeo.Group;
 
 public class MultiHyperGeo {
@@ -23,96 +18,221 @@ public class MultiHyperGeo {
 	/********************************/
 
 	public static double probability(List<Group> glist, int n) throws IllegalArgumentException {
-		return probability(glist, n, false);
+		return probability(GroupSet.of(glist), n);
 	}
 
+	/**
+	 * Setting multithreaded to false keeps the calculation on the calling thread.
+	 * Otherwise, it's moved to the {@link StatisticsPool} only if the estimated
+	 * work is large enough to benefit.
+	 */
 	public static double probability(List<Group> glist, int n, boolean multithreaded) throws IllegalArgumentException {
-		verifyProbabilityArgs(glist, n);
-
-		int N = 0; // The total number of cards
-		List<Integer> K = new ArrayList<>(); // Number of balls of each group
-		List<Integer> k1 = new ArrayList<>(); // Minimum successes of balls of each group
-		List<Integer> k2 = new ArrayList<>(); // Maximum successes of balls of each group
-
-		// Unpack data, determine population size. The unpacked data is now safe.
-		// Note that for the purposes of multithreading, these are not declared final,
-		// but will never actually change, only be referenced.
-		for (Group g : glist) {
-			N += g.getK();
-			K.add(g.getK());
-			k1.add(g.getk1());
-			k2.add(g.getk2());
-		}
-
-		List<List<Integer>> possibilities = findPossibilities(k1, k2, n);
-		double numerator = 0;
-		if (multithreaded) {
-			// Multithread calculating the chances for all the possibilities
-			final int callsPerThread = 50;
-			class ProbThread implements Callable<Double> {
-
-				private final int startIndex;
-
-				ProbThread(int startIndex) {
-					this.startIndex = startIndex;
-				}
+		return probability(GroupSet.of(glist), n, multithreaded);
+	}
 
-				@Override
-				public Double call() throws Exception {
-					double partialNumerator = 0;
-
-					// Do all the PMFs allocated to this thread
-					// Do the pmf to start at, up to the pmf to end at (End of allocated calls, or
-					// end of all calls)
-					for (int i = startIndex; (i < startIndex + callsPerThread) && (i < possibilities.size()); i++) {
-						partialNumerator += pmfNum(K, possibilities.get(i));
-					}
-					return partialNumerator;
-				}
+	public static double probability(List<Group> glist, int n, ProbabilityEngine engine)
+			throws IllegalArgumentException {
+		return probability(GroupSet.of(glist), n, engine);
+	}
 
-			}
+	public static double probability(GroupSet groups, int n) throws IllegalArgumentException {
+		return probability(groups, n, ProbabilityEngine.AUTO, true);
+	}
 
-			// Make the correct number of threads
-			List<Callable<Double>> tasklist = new ArrayList<>();
-			for (int i = 0; i < possibilities.size(); i += callsPerThread) {
-				tasklist.add(new ProbThread(i));
-			}
+	/**
+	 * See {@link #probability(List, int, boolean)}.
+	 */
+	public static double probability(GroupSet groups, int n, boolean multithreaded) throws IllegalArgumentException {
+		return probability(groups, n, ProbabilityEngine.AUTO, multithreaded);
+	}
 
-			// Execute all threads
-			List<Future<Double>> flist = null;
-			try {
-				ExecutorService threadPool = Executors.newFixedThreadPool(10);
-				flist = threadPool.invokeAll(tasklist);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
+	public static double probability(GroupSet groups, int n, ProbabilityEngine engine)
+			throws IllegalArgumentException {
+		return probability(groups, n, engine, true);
+	}
 
-			// Total up the answers
-			for (int i = 0; i < flist.size(); i++) {
-				try {
-					numerator += flist.get(i).get();
-				} catch (Exception e) {
-					e.printStackTrace();
-				}
-			}
-		} else {
-			for (int i = 0; i < possibilities.size(); i++) {
-				numerator += pmfNum(K, possibilities.get(i));
+	private static double probability(GroupSet groups, int n, ProbabilityEngine engine, boolean multithreaded)
+			throws IllegalArgumentException {
+		verifyProbabilityArgs(groups, n);
+		return unverifiedProbability(groups, n, engine, multithreaded);
+	}
+
+	/**
+	 * The same as {@link #probability(GroupSet, int, ProbabilityEngine)}, for
+	 * callers in this package that have already verified their arguments.
+	 */
+	static double unverifiedProbability(GroupSet groups, int n, ProbabilityEngine engine, boolean multithreaded) {
+		// Work on the smallest equivalent problem. Its ranges are exactly the
+		// possible ones, which lets the enumeration skip impossible outcomes
+		// entirely.
+		groups = Canonicalizer.canonicalize(groups, n);
+		if (groups == null) {
+			return 0;
+		}
+		if (groups.size() == 1) {
+			// Every card is in the one group, and its range allows drawing all n.
+			return 1;
+		}
+		// Small decks can count hands exactly, which is both faster and free of
+		// rounding. If the counts get too big, fall back to the floating point
+		// engines.
+		if ((engine == ProbabilityEngine.AUTO && groups.N <= BinomialTables.EXACT_LIMIT)
+				|| engine == ProbabilityEngine.EXACT) {
+			final double exact = ExactCounting.probability(groups.N, groups.K, groups.k1, groups.kmax, n);
+			if (!Double.isNaN(exact)) {
+				return exact;
 			}
+			engine = ProbabilityEngine.AUTO;
+		}
+		if (engine == ProbabilityEngine.AUTO) {
+			engine = chooseEngine(groups.k1, groups.kmax, n);
 		}
-		return numerator / CombinatoricsUtils.binomialCoefficientDouble(N, n);
+		if (engine == ProbabilityEngine.CONVOLUTION) {
+			return Convolution.probability(groups.N, groups.K, groups.k1, groups.kmax, n);
+		}
+
+		// Only go parallel if it's allowed and there's enough work to be worth it.
+		OutcomeSpliterator outcomes = new OutcomeSpliterator(groups.k1, groups.kmax, n);
+		if (multithreaded && StatisticsPool.shouldParallelize(estimateWork(outcomes, groups.size()))) {
+			return StatisticsPool.invoke(new OutcomeSumTask(groups.N, groups.K, n, outcomes));
+		}
+		return sumPmf(groups.N, groups.K, n, outcomes);
 	}
 
 	public static double pmf(int N, List<Integer> K, int n, List<Integer> k) throws IllegalArgumentException {
 		verifyPMFArgs(N, K, n, k);
 
-		double numerator = 1;
-		int size = K.size();
+		// Computed in log space so that large decks can't overflow. See HyperGeoMath.
+		int[] Karr = K.stream().mapToInt(i -> i).toArray();
+		int[] karr = k.stream().mapToInt(i -> i).toArray();
+		return Math.exp(HyperGeoMath.logPmf(N, Karr, n, karr));
+	}
 
-		for (int i = 0; i < size; i++) {
-			numerator *= CombinatoricsUtils.binomialCoefficientDouble(K.get(i), k.get(i));
+	/**
+	 * The distribution of how many cards one group draws, while every other group
+	 * stays within its range.
+	 * 
+	 * Entry j of the result is the probability that the group at index of draws
+	 * exactly j cards, and every other group draws between its k1 and k2. The
+	 * group's own range is ignored, so adding up the entries from its k1 to its k2
+	 * gives {@link #probability(GroupSet, int) probability()}, and dividing by the
+	 * sum of every entry gives the distribution given that the other groups
+	 * succeed. The whole array comes from a single pass of the same dynamic
+	 * programming as {@link ProbabilityEngine#CONVOLUTION}.
+	 * 
+	 * @return marginal An array of length min(K, n) + 1, where K is the size of
+	 *         the group.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If of isn't an index into the groups, or for the same reasons as
+	 *             {@link #probability(GroupSet, int) probability()}.
+	 */
+	public static double[] marginal(GroupSet groups, int of, int n) throws IllegalArgumentException {
+		verifyDistributionArgs(groups, of, n);
+		return unverifiedMarginal(groups, of, n);
+	}
+
+	public static double[] marginal(List<Group> glist, Group of, int n) throws IllegalArgumentException {
+		verifyDistributionArgs(glist, of);
+		return marginal(GroupSet.of(glist), glist.indexOf(of), n);
+	}
+
+	static double[] unverifiedMarginal(GroupSet groups, int of, int n) {
+		final int K = groups.K[of];
+		final double[] marginal = new double[Math.min(K, n) + 1];
+		if (groups.N == 0) {
+			marginal[0] = 1;
+			return marginal;
+		}
+
+		// rest[m] is the scaled number of ways the other groups can draw m cards
+		// between them. This group has to make up the difference.
+		final Convolution.Scale scale = new Convolution.Scale(groups.N, n);
+		final double[] rest = Convolution.convolve(groups.K, groups.k1, groups.kmax, n, scale, of);
+		final double denominator = scale.denominator(groups.N, n);
+		for (int j = 0; j < marginal.length; j++) {
+			marginal[j] = scale.weight(K, j) * rest[n - j] / denominator;
+		}
+		return marginal;
+	}
+
+	/**
+	 * The probability that every group is within its range, in a sample of every
+	 * size from 0 to nMax.
+	 * 
+	 * The convolution engine already works out, for every m at once, the number of
+	 * ways the groups can draw m cards between them while each stays in its range.
+	 * So a single convolution up to nMax gives the whole curve, with each
+	 * coefficient divided by its own C(N, m).
+	 * 
+	 * @return curve An array of length nMax + 1, where curve[m] is
+	 *         {@link #probability(GroupSet, int) probability(groups, m)}, or zero
+	 *         where m is less than some k1.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             For the same reasons as {@link #probability(GroupSet, int)
+	 *             probability()} with n = nMax.
+	 */
+	public static double[] probabilityBySampleSize(GroupSet groups, int nMax) throws IllegalArgumentException {
+		verifyGroupSet(groups, nMax);
+		return unverifiedProbabilityBySampleSize(groups, nMax);
+	}
+
+	static double[] unverifiedProbabilityBySampleSize(GroupSet groups, int nMax) {
+		final double[] curve = new double[nMax + 1];
+		if (groups.N == 0) {
+			curve[0] = 1;
+			return curve;
+		}
+		final Convolution.Scale scale = new Convolution.Scale(groups.N, nMax);
+		final double[] ways = Convolution.convolve(groups.K, groups.k1, groups.kmax, nMax, scale, -1);
+		for (int m = 0; m <= nMax; m++) {
+			curve[m] = Math.min(1, ways[m] / scale.denominator(groups.N, m));
+		}
+		return curve;
+	}
+
+	/**
+	 * The probability that every group is within its range by each turn of a
+	 * game, from the opening hand (turn 0) through turn T. See
+	 * {@link UniHyperGeo#probabilityByTurn(int, int, int, int, int, boolean)}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When (turns < 0), the deck doesn't have enough cards to last
+	 *             until turn T, or for the same reasons as
+	 *             {@link #probability(GroupSet, int) probability()}.
+	 */
+	public static double[] probabilityByTurn(GroupSet groups, int turns, boolean onThePlay)
+			throws IllegalArgumentException {
+		if (turns < 0) {
+			throw new IllegalArgumentException("The number of turns must be greater than or equal to zero.");
 		}
-		return numerator / CombinatoricsUtils.binomialCoefficientDouble(N, n);
+		final int nMax = UniHyperGeo.cardsSeenByTurn(turns, onThePlay);
+		// Checked even when the curve is all zeroes, as in UniHyperGeo.
+		verifyGroupSet(groups, Math.max(nMax, groups.maxk1()));
+		if (nMax < groups.maxk1()) {
+			return new double[turns + 1];
+		}
+		return UniHyperGeo.byTurn(unverifiedProbabilityBySampleSize(groups, nMax), turns, onThePlay);
+	}
+
+	public static double[] probabilityByTurn(List<Group> glist, int turns, boolean onThePlay)
+			throws IllegalArgumentException {
+		return probabilityByTurn(GroupSet.of(glist), turns, onThePlay);
+	}
+
+	/**
+	 * Verifies a group list and sample size once, and returns a handle that can
+	 * evaluate the probability, means, variances, and mulligan variants as many
+	 * times as needed without checking them again. See {@link MultiHyperGeoQuery}.
+	 */
+	public static MultiHyperGeoQuery compile(List<Group> glist, int n) throws IllegalArgumentException {
+		return compile(GroupSet.of(glist), n);
+	}
+
+	public static MultiHyperGeoQuery compile(GroupSet groups, int n) throws IllegalArgumentException {
+		verifyProbabilityArgs(groups, n);
+		return new MultiHyperGeoQuery(groups, n);
 	}
 
 	/********************************/
@@ -120,182 +240,289 @@ public class MultiHyperGeo {
 	/********************************/
 
 	public static double probabilityOnVancouverMullToX(List<Group> glist, int X) throws IllegalArgumentException {
-		return calculateProbabilityOnGeneralMullToX(glist, X, true, 7);
+		return probabilityOnVancouverMullToX(GroupSet.of(glist), X);
 	}
 
 	public static double probabilityOnVancouverMullToXWithFree(List<Group> glist, int X)
 			throws IllegalArgumentException {
-		return 1 - ((1 - probabilityOnVancouverMullToX(glist, X)) * (1 - probability(glist, 7)));
+		return probabilityOnVancouverMullToXWithFree(GroupSet.of(glist), X);
 	}
 	
 	public static double probabilityOnParisMullToX(List<Group> glist, int X) throws IllegalArgumentException {
-		return calculateProbabilityOnGeneralMullToX(glist, X, false, 7);
+		return probabilityOnParisMullToX(GroupSet.of(glist), X);
 	}
 
 	public static double probabilityOnParisMullToXWithFree(List<Group> glist, int X)
 			throws IllegalArgumentException {
-		return 1 - ((1 - probabilityOnParisMullToX(glist, X)) * (1 - probability(glist, 7)));
+		return probabilityOnParisMullToXWithFree(GroupSet.of(glist), X);
 	}
 	
 	public static double probabilityOnLondonMullToX(List<Group> glist, int X)
 			throws IllegalArgumentException {
-		return calculateProbabilityOnLondonMullToX(glist, X, 7);
+		return probabilityOnLondonMullToX(GroupSet.of(glist), X);
 	}
 	
 	public static double probabilityOnLondonMullToXWithFree(List<Group> glist, int X)
 			throws IllegalArgumentException {
-		return 1 - ((1 - probabilityOnLondonMullToX(glist, X)) * (1 - probability(glist, 7)));
+		return probabilityOnLondonMullToXWithFree(GroupSet.of(glist), X);
 	}
-	
-	
-	/********************************/
-	/* Utility Functions            */
-	/********************************/
 
-	protected static double calculateProbabilityOnGeneralMullToX(List<Group> glist, int X, boolean withScries,
-			int startingHandSize) throws IllegalArgumentException {
+	public static double probabilityOnVancouverMullToX(GroupSet groups, int X) throws IllegalArgumentException {
+		return calculateProbabilityOnGeneralMullToX(groups, X, true, 7);
+	}
 
-		// This method will also throw the same IllegalArgumentExceptions that
-		// probability() will throw to verify its arguments, since this method calls
-		// that one. However, there is one new variable to check or correct.
+	public static double probabilityOnVancouverMullToXWithFree(GroupSet groups, int X)
+			throws IllegalArgumentException {
+		return 1 - ((1 - probabilityOnVancouverMullToX(groups, X)) * (1 - probability(groups, 7)));
+	}
+	
+	public static double probabilityOnParisMullToX(GroupSet groups, int X) throws IllegalArgumentException {
+		return calculateProbabilityOnGeneralMullToX(groups, X, false, 7);
+	}
 
-		// We're going to rebuild a new glist that will be safe to be use with this
-		// value of x.
+	public static double probabilityOnParisMullToXWithFree(GroupSet groups, int X)
+			throws IllegalArgumentException {
+		return 1 - ((1 - probabilityOnParisMullToX(groups, X)) * (1 - probability(groups, 7)));
+	}
+	
+	public static double probabilityOnLondonMullToX(GroupSet groups, int X)
+			throws IllegalArgumentException {
+		return calculateProbabilityOnLondonMullToX(groups, X, 7);
+	}
+	
+	public static double probabilityOnLondonMullToXWithFree(GroupSet groups, int X)
+			throws IllegalArgumentException {
+		return UniHyperGeo.calculateProbabilityOnLondonMullToXWithFree(handSize -> probability(groups, handSize), X,
+				groups.maxk1(), 7);
+	}
 
+	/**
+	 * Every mulligan rule, every X, with and without a free mulligan, from one
+	 * evaluation of each hand size. See {@link MulliganTable}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the deck has fewer than seven cards, or any k1 is more than
+	 *             seven.
+	 */
+	public static MulliganTable mulliganTable(GroupSet groups) throws IllegalArgumentException {
+		verifyGroupSet(groups, MulliganTable.STARTING_HAND_SIZE);
+		return new MulliganTable(handSize -> unverifiedProbability(groups, handSize, ProbabilityEngine.AUTO, true),
+				groups.maxk1(), groups.N);
+	}
 
-		// If X is less than the lowest minimum required successes in the group list,
-		// then that means we can actually only mulligan down to k1 cards in hand.
-		for (Group g : glist) {
-			int k1 = g.getk1();
-			if (X < k1) {
-				X = k1;
-			}
-		}
+	public static MulliganTable mulliganTable(List<Group> glist) throws IllegalArgumentException {
+		return mulliganTable(GroupSet.of(glist));
+	}
 
-		// If X is more than the starting hand size, then this is wrong.
-		if (X > startingHandSize) {
-			throw new IllegalArgumentException(
-					"X cannot be greater than the starting hand size. You cannot mull down to more cards than you start with.");
-		}
+	/**
+	 * The probability that, in the course of London mulliganing down to X cards,
+	 * you keep a hand where every group is within its range, taking into account
+	 * that you get to choose which cards to put on the bottom.
+	 * 
+	 * {@link #probabilityOnLondonMullToX(GroupSet, int) probabilityOnLondonMullToX()}
+	 * only counts a mulligan as a success when all seven cards it draws are
+	 * already a success. But after mulliganing to X, you keep the best X of the
+	 * seven. Seven cards with five lands fail "two to four lands", but after one
+	 * mulligan you can bottom a land and keep six cards with four of them. This
+	 * function counts that.
+	 * 
+	 * @param X
+	 *            The number of cards in hand that you're willing to mulligan down
+	 *            to (between 0 - 7).
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When (X < 0 || X > 7), or the deck has fewer than seven cards.
+	 */
+	public static double probabilityOnLondonBottomingMullToX(GroupSet groups, int X) throws IllegalArgumentException {
+		verifyMullToX(X);
+		return londonBottomingCurve(groups, false)[X];
+	}
 
-		// If it's exactly the starting hand size, then they're not willing to mulligan,
-		// and they're looking at exactly that many cards, so just call the other
-		// function.
-		if (X == startingHandSize) {
-			return probability(glist, startingHandSize, false);
-		}
+	public static double probabilityOnLondonBottomingMullToX(List<Group> glist, int X)
+			throws IllegalArgumentException {
+		return probabilityOnLondonBottomingMullToX(GroupSet.of(glist), X);
+	}
 
-		// In these "At least one" Combinatorics problems, the probability of at least
-		// one event occurring is the compliment of the event not occurring, which
-		// itself
-		// is the compliment of the probability of the event happening. So, instead of
-		// tracking the probability of success through the problem, we track the
-		// probability of failure.
+	/**
+	 * See {@link #probabilityOnLondonBottomingMullToX(GroupSet, int)}. The first
+	 * mulligan is free, so it draws seven and keeps seven.
+	 */
+	public static double probabilityOnLondonBottomingMullToXWithFree(GroupSet groups, int X)
+			throws IllegalArgumentException {
+		verifyMullToX(X);
+		return londonBottomingCurve(groups, true)[X];
+	}
 
-		double probabilityOfFailure = 1;
+	public static double probabilityOnLondonBottomingMullToXWithFree(List<Group> glist, int X)
+			throws IllegalArgumentException {
+		return probabilityOnLondonBottomingMullToXWithFree(GroupSet.of(glist), X);
+	}
 
-		// The initial opening hand
-		probabilityOfFailure *= 1 - probability(glist, startingHandSize, false);
+	/**
+	 * {@link #probabilityOnLondonBottomingMullToX(GroupSet, int)} for every X from
+	 * 0 to 7, from a single pass over the seven card hands.
+	 * 
+	 * @return curve An array of length 8, where curve[X] is the probability of a
+	 *         success when mulliganing to X.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the deck has fewer than seven cards.
+	 */
+	public static double[] londonBottomingCurve(GroupSet groups, boolean withFree) throws IllegalArgumentException {
+		verifyGroupSet(groups, 7);
+		return londonBottomingCurve(keepableHandSizes(groups, 7), withFree);
+	}
 
-		// Mulligans (with/without scries)
-		for (int mullHandSize = startingHandSize - 1; mullHandSize >= X; mullHandSize--) {
-			// If there are scries, then add one to how many cards we're looking at.
-			probabilityOfFailure *= 1 - probability(glist, withScries ? mullHandSize + 1 : mullHandSize, false);
+	/**
+	 * Turns the output of {@link #keepableHandSizes(GroupSet, int)} into the
+	 * probability of a success for each X. Mulliganing to X means attempts that
+	 * keep 7, 6, ..., X cards, each drawing a fresh seven, and the attempts are
+	 * independent.
+	 */
+	static double[] londonBottomingCurve(double[] keepable, boolean withFree) {
+		final int startingHandSize = keepable.length - 1;
+		final double[] curve = new double[startingHandSize + 1];
+		double failure = withFree ? 1 - keepable[startingHandSize] : 1;
+		for (int X = startingHandSize; X >= 0; X--) {
+			failure *= 1 - keepable[X];
+			curve[X] = 1 - failure;
 		}
-		return 1 - probabilityOfFailure;
+		return curve;
 	}
 
-	protected static double calculateProbabilityOnLondonMullToX(List<Group> glist, int X,
-			int startingHandSize) throws IllegalArgumentException {
-		// This method is much like calculateProbabilityOnGeneralMullToX(), but with the
-		// London Mulligan.
-
-		// Same as that function, this one will also throw the same
-		// IllegalArgumentExceptions that probability() will throw to verify its
-		// arguments, since this method calls that one. However, there is one new
-		// variable to check or correct.
-
-
-		// If X is less than the lowest minimum required successes in the group list,
-		// then that means we can actually only mulligan down to k1 cards in hand.
-		for (Group g : glist) {
-			int k1 = g.getk1();
-			if (X < k1) {
-				X = k1;
+	/**
+	 * For each hand size h from 0 to startingHandSize, the probability that a hand
+	 * of startingHandSize cards can have some cards bottomed to leave h cards with
+	 * every group within its range.
+	 * 
+	 * Every composition of the starting hand is visited once. For a composition
+	 * c, the hand can keep h cards exactly when every c[i] is at least k1[i], and h
+	 * is between the sum of the k1[i] and the sum of min(c[i], k2[i]). That's a
+	 * whole range of h at once, so each composition costs one pass over the groups,
+	 * however many hand sizes there are. Groups that don't constrain anything are
+	 * merged first, since they all just make up the difference.
+	 */
+	static double[] keepableHandSizes(GroupSet groups, int startingHandSize) {
+		final int size = groups.size();
+		int constrained = 0;
+		int otherCards = 0;
+		for (int i = 0; i < size; i++) {
+			if (groups.k1[i] == 0 && groups.kmax[i] >= Math.min(groups.K[i], startingHandSize)) {
+				otherCards += groups.K[i];
+			} else {
+				constrained++;
 			}
 		}
-
-		// If X is more than the starting hand size, then this is wrong.
-		if (X > startingHandSize) {
-			throw new IllegalArgumentException(
-					"X cannot be greater than the starting hand size. You cannot mull down to more cards than you start with.");
+		final int reducedSize = constrained + (constrained < size ? 1 : 0);
+		final int[] K = new int[reducedSize];
+		final int[] low = new int[reducedSize];
+		final int[] high = new int[reducedSize];
+		int next = 0;
+		for (int i = 0; i < size; i++) {
+			if (!(groups.k1[i] == 0 && groups.kmax[i] >= Math.min(groups.K[i], startingHandSize))) {
+				K[next] = groups.K[i];
+				low[next] = groups.k1[i];
+				high[next] = groups.kmax[i];
+				next++;
+			}
 		}
-
-		// If it's exactly the starting hand size, then they're not willing to mulligan,
-		// and they're looking at exactly that many cards, so just call the other
-		// function.
-		if (X == startingHandSize) {
-			return probability(glist, startingHandSize);
+		if (constrained < size) {
+			K[constrained] = otherCards;
+			low[constrained] = 0;
+			high[constrained] = otherCards;
 		}
 
-		// In these "At least one" Combinatorics problems, the probability of at least
-		// one event occurring is the compliment of the event not occurring, which
-		// itself is the compliment of the probability of the event happening. So,
-		// instead of tracking the probability of success through the problem, we track
-		// the probability of failure.
-
-		// The initial opening hand, then all mulligans
-		double probabilityOfFailure = 1;
-		for (int i = X; i <= startingHandSize; i++) {
-			probabilityOfFailure *= 1 - probability(glist, startingHandSize);
+		final int[] min = new int[reducedSize];
+		final int[] max = new int[reducedSize];
+		for (int i = 0; i < reducedSize; i++) {
+			max[i] = Math.min(K[i], startingHandSize);
 		}
 
-		return 1 - probabilityOfFailure;
-	}
-	
-	protected static List<List<Integer>> findPossibilities(List<Integer> k1, List<Integer> k2, int n) {
-
-		// Generate every possible combination between k1 and k2
-		List<List<Integer>> prev = new ArrayList<>(), newList = new ArrayList<>();
-		for (int i = k1.get(0); i <= k2.get(0); i++) {
-			ArrayList<Integer> list = new ArrayList<>(1);
-			prev.add(list);
-			list.add(i);
-		}
-
-		for (int i = 1; i < k1.size(); i++) {
-			for (int j = k1.get(i); j <= k2.get(i); j++) {
-				for (List<Integer> l : prev) {
-					ArrayList<Integer> list = new ArrayList<>(l);
-					newList.add(list);
-					list.add(j);
+		// Each composition adds its probability to a range of hand sizes. Mark where
+		// each range starts and ends, and add them all up at the end.
+		final double[] difference = new double[startingHandSize + 2];
+		final OutcomeSpliterator hands = new OutcomeSpliterator(min, max, startingHandSize);
+		while (hands.advance()) {
+			final int[] c = hands.current();
+			int least = 0, most = 0;
+			boolean keepable = true;
+			for (int i = 0; i < reducedSize; i++) {
+				if (c[i] < low[i]) {
+					keepable = false;
+					break;
 				}
+				least += low[i];
+				most += Math.min(c[i], high[i]);
+			}
+			if (keepable && least <= most) {
+				final double probability = Math.exp(HyperGeoMath.logPmf(groups.N, K, startingHandSize, c));
+				difference[least] += probability;
+				difference[most + 1] -= probability;
 			}
-			prev = newList;
-			newList = new ArrayList<>();
 		}
 
-		// Pare them down to the ones we care about which sum to n
-		List<List<Integer>> possibilities = new ArrayList<>();
-		prev.forEach((p) -> {
-			if (p.stream().mapToInt(i -> i).sum() == n) {
-				possibilities.add(p);
-			}
+		final double[] keepable = new double[startingHandSize + 1];
+		double running = 0;
+		for (int h = 0; h <= startingHandSize; h++) {
+			running += difference[h];
+			keepable[h] = Math.min(1, Math.max(0, running));
+		}
+		return keepable;
+	}
+	
+	
+	/********************************/
+	/* Utility Functions            */
+	/********************************/
 
-		});
+	protected static double calculateProbabilityOnGeneralMullToX(GroupSet groups, int X, boolean withScries,
+			int startingHandSize) throws IllegalArgumentException {
+		return UniHyperGeo.calculateProbabilityOnGeneralMullToX(handSize -> probability(groups, handSize, false), X,
+				groups.maxk1(), withScries, startingHandSize);
+	}
 
-		return possibilities;
+	protected static double calculateProbabilityOnLondonMullToX(GroupSet groups, int X,
+			int startingHandSize) throws IllegalArgumentException {
+		return UniHyperGeo.calculateProbabilityOnLondonMullToX(handSize -> probability(groups, handSize), X,
+				groups.maxk1(), startingHandSize);
 	}
 
-	protected static double pmfNum(List<Integer> K, List<Integer> k) {
+	/**
+	 * Picks whichever engine should be cheaper for these ranges. Enumeration does
+	 * one pmf, about one operation per group, for every outcome, and the number of
+	 * outcomes is at most the product of the sizes of the ranges. Convolution does
+	 * one multiply-add for every pair of a partial total and a value in the next
+	 * group's range.
+	 */
+	protected static ProbabilityEngine chooseEngine(int[] k1, int[] k2, int n) {
+		final int size = k1.length;
+		long convolutionCost = 0;
+		long enumerationCost = size;
+		for (int i = 0; i < size; i++) {
+			final long range = Math.max(0, Math.min(k2[i], n) - k1[i] + 1);
+			convolutionCost += (n + 1) * range;
+			enumerationCost = enumerationCost > Long.MAX_VALUE / Math.max(range, 1) ? Long.MAX_VALUE
+					: enumerationCost * Math.max(range, 1);
+		}
+		return enumerationCost > convolutionCost ? ProbabilityEngine.CONVOLUTION : ProbabilityEngine.ENUMERATION;
+	}
+
+	/**
+	 * Roughly how many operations summing the pmf over these outcomes will take.
+	 */
+	protected static long estimateWork(OutcomeSpliterator outcomes, int groups) {
+		final long size = outcomes.estimateSize();
+		return size > Long.MAX_VALUE / groups ? Long.MAX_VALUE : size * groups;
+	}
+
+	protected static double sumPmf(int N, int[] K, int n, OutcomeSpliterator outcomes) {
 		// Only called by probability, which should already check everything necessary.
 		// Therefore, there are no IllegalArgumentExceptions required here.
-		double numerator = 1;
-		int size = K.size();
-		for (int i = 0; i < size; i++) {
-			numerator *= CombinatoricsUtils.binomialCoefficientDouble(K.get(i), k.get(i));
+		double probability = 0;
+		while (outcomes.advance()) {
+			probability += Math.exp(HyperGeoMath.logPmf(N, K, n, outcomes.current()));
 		}
-		return numerator;
+		return probability;
 	}
 
 	/********************************/
@@ -303,83 +530,101 @@ public class MultiHyperGeo {
 	/********************************/
 
 	public static double mean(List<Group> glist, Group meanOf, int n) {
-		verifyDistributionArgs(glist, meanOf, n);
-
-		int N = 0;
-		for (int i = 0; i < glist.size(); i++) {
-			N += glist.get(i).getK();
-		}
-		return n * ((double) meanOf.getK() / (double) N);
+		verifyDistributionArgs(glist, meanOf);
+		return mean(GroupSet.of(glist), glist.indexOf(meanOf), n);
 	}
 
 	public static double variance(List<Group> glist, Group meanOf, int n) {
-		verifyDistributionArgs(glist, meanOf, n);
+		verifyDistributionArgs(glist, meanOf);
+		return variance(GroupSet.of(glist), glist.indexOf(meanOf), n);
+	}
+
+	public static double standardDeviation(List<Group> glist, Group meanOf, int n) {
+		verifyDistributionArgs(glist, meanOf);
+		return standardDeviation(GroupSet.of(glist), glist.indexOf(meanOf), n);
+	}
+
+	public static double mean(GroupSet groups, int meanOf, int n) {
+		verifyDistributionArgs(groups, meanOf, n);
+		return unverifiedMean(groups, meanOf, n);
+	}
 
-		int N = 0;
-		for (int i = 0; i < glist.size(); i++) {
-			N += glist.get(i).getK();
+	public static double variance(GroupSet groups, int meanOf, int n) {
+		verifyDistributionArgs(groups, meanOf, n);
+		return unverifiedVariance(groups, meanOf, n);
+	}
+
+	public static double standardDeviation(GroupSet groups, int meanOf, int n) {
+		verifyDistributionArgs(groups, meanOf, n);
+		return Math.sqrt(unverifiedVariance(groups, meanOf, n));
+	}
+
+	/**
+	 * The mean, variance, and standard deviation of every group, and the
+	 * covariance between every pair, in one go. Checking the arguments and
+	 * working out N happen once, rather than once per group and statistic. See
+	 * {@link DistributionSummary}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When (n < 0), or (N < n).
+	 */
+	public static DistributionSummary summary(GroupSet groups, int n) throws IllegalArgumentException {
+		if (n < 0) {
+			throw new IllegalArgumentException(
+					"n must be greater than or equal to zero. You can't look at a negative number of cards.");
+		}
+		if (groups.N < n) {
+			throw new IllegalArgumentException(
+					"N must be greater than or equal to n. You cannot look at more cards without replacement than are in the deck.");
 		}
-		final double p1 = ((double) meanOf.getK() / (double) N);
+		return new DistributionSummary(groups, n);
+	}
+
+	public static DistributionSummary summary(List<Group> glist, int n) throws IllegalArgumentException {
+		return summary(GroupSet.of(glist), n);
+	}
+
+	static double unverifiedMean(GroupSet groups, int meanOf, int n) {
+		return n * ((double) groups.K[meanOf] / (double) groups.N);
+	}
+
+	static double unverifiedVariance(GroupSet groups, int meanOf, int n) {
+		final int N = groups.N;
+		final double p1 = ((double) groups.K[meanOf] / (double) N);
 		final double p2 = (1 - p1);
 		final double p3 = n * ((double) (N - n) / (double) (N - 1));
 		return p1 * p2 * p3;
 	}
 
-	public static double standardDeviation(List<Group> glist, Group meanOf, int n) {
-		verifyDistributionArgs(glist, meanOf, n);
-		return Math.sqrt(variance(glist, meanOf, n));
-	}
-
 	/********************************/
 	/* Verify Arguments             */
 	/********************************/
 
-	private static void verifyProbabilityArgs(List<Group> glist, int n) {
-		verifyGroupList(glist, n);
+	static void verifyProbabilityArgs(GroupSet groups, int n) throws IllegalArgumentException {
+		verifyGroupSet(groups, n);
 	}
 
-	private static void verifyGroupList(List<Group> glist, int n) throws IllegalArgumentException {
-		
-		if (glist.isEmpty()) {
-			throw new IllegalArgumentException("The group list must contain at least one group.");
+	private static void verifyGroupSet(GroupSet groups, int n) throws IllegalArgumentException {
+		// The groups themselves were already checked when the GroupSet was built. All
+		// that's left is how they relate to n.
+		if (n < 0) {
+			throw new IllegalArgumentException(
+					"All arguments must be greater than or equal to zero. Negative numbers don't make sense in this context.");
 		}
-
-		// Total the number of cards in the group list. This will be used to verify the
-		// group list is all in order.
-		int N = 0;
-		for (int i = 0; i < glist.size(); i++) {
-			if (glist.get(i).getK() < 0) {
-				throw new IllegalArgumentException("The number of cards in each group must be greater"
-						+ " than or equal to zero. The group " + glist.get(i).getName() + "violates this.");
-			}
-			N += glist.get(i).getK();
-
+		if (groups.N < n) {
+			throw new IllegalArgumentException(
+					"N must be greater than or equal to n. You cannot look at more cards without replacement than are in the deck.");
 		}
+		if (n < groups.maxk1()) {
+			throw new IllegalArgumentException(
+					"n must be greater than or equal to k1. If you look at less cards than you need for a success, you can never have a success.");
+		}
+	}
 
-		// Since we just enforced meanOf is contained in the group list, this verifies
-		// it also.
-		for (int i = 0; i < glist.size(); i++) {
-			final int K = glist.get(i).getK();
-			final int k1 = glist.get(i).getk1();
-			final int k2 = glist.get(i).getk2();
-
-			if (N < 0 || K < 0 || n < 0 || k1 < 0 || k2 < 0) {
-				throw new IllegalArgumentException(
-						"All arguments must be greater than or equal to zero. Negative numbers don't make sense in this context.");
-			}
-			// (k2 < k1) is already covered by Group's constructor.
-			if (N < K) {
-				throw new IllegalArgumentException(
-						"N must be greater than or equal to K. There cannot be more successes in the deck than there are cards total.");
-			}
-			if (N < n) {
-				throw new IllegalArgumentException(
-						"N must be greater than or equal to n. You cannot look at more cards without replacement than are in the deck.");
-			}
-			if (n < k1) {
-				throw new IllegalArgumentException(
-						"n must be greater than or equal to k1. If you look at less cards than you need for a success, you can never have a success.");
-			}
+	static void verifyMullToX(int X) throws IllegalArgumentException {
+		if (X < 0 || X > 7) {
+			throw new IllegalArgumentException(
+					"X must be between 0 and 7. You cannot mull down to more cards than you start with.");
 		}
 	}
 
@@ -398,16 +643,27 @@ public class MultiHyperGeo {
 		}
 	}
 
-	private static void verifyDistributionArgs(List<Group> glist, Group meanOf, int n) throws IllegalArgumentException {
+	private static void verifyDistributionArgs(List<Group> glist, Group meanOf) throws IllegalArgumentException {
+		if (!glist.contains(meanOf)) {
+			throw new IllegalArgumentException("The group \"meanOf\", in this case " + meanOf.getName()
+					+ ", must be contained in the group list.");
+		}
+	}
+
+	private static void verifyDistributionArgs(GroupSet groups, int meanOf, int n) throws IllegalArgumentException {
 		if (n < 0) {
 			throw new IllegalArgumentException(
 					"n must be greater than or equal to zero. You can't look at a negative number of cards.");
 		}
-		if (!glist.contains(meanOf)) {
-			throw new IllegalArgumentException("The group \"meanOf\", in this case " + meanOf.getName()
-					+ ", must be contained in the group list.");
+		verifyGroupIndex(groups, meanOf);
+		verifyGroupSet(groups, n);
+	}
+
+	static void verifyGroupIndex(GroupSet groups, int meanOf) throws IllegalArgumentException {
+		if (meanOf < 0 || meanOf >= groups.size()) {
+			throw new IllegalArgumentException("The group \"meanOf\", in this case " + meanOf
+					+ ", must be an index into the group list.");
 		}
-		verifyGroupList(glist, n);
 	}
 
 }
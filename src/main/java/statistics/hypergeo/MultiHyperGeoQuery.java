@@ -0,0 +1,227 @@
+package statistics.hypergeo;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A multivariate query whose arguments have already been verified, made by
+ * {@link MultiHyperGeo#compile(GroupSet, int) MultiHyperGeo.compile()}.
+ *
+ * Asking a query for a result never checks the group list again, and every
+ * probability it calculates for a given hand size is remembered, so asking for
+ * several mulligan variants of the same deck only calculates each hand size
+ * once. Queries are immutable apart from that memory, and are safe to share
+ * between threads.
+ */
+public class MultiHyperGeoQuery {
+
+	// Hand sizes up to this are remembered. That covers every mulligan.
+	private static final int MEMO_SIZE = 9;
+	private static final long UNKNOWN = Double.doubleToLongBits(Double.NaN);
+
+	private final GroupSet groups;
+	private final int n;
+	// The bits of each remembered probability, or of NaN until it's known.
+	// Calculated without a lock, so callers never wait on each other. Two threads
+	// might both calculate the same one, but they get the same answer, so it
+	// doesn't matter whose is kept.
+	private final AtomicLongArray probabilityByHandSize = new AtomicLongArray(MEMO_SIZE);
+	// The chance of being able to keep each hand size out of seven, for the
+	// London mulligan with bottoming. Calculated the first time it's needed.
+	private volatile double[] keepableHandSizes = null;
+
+	MultiHyperGeoQuery(GroupSet groups, int n) {
+		this.groups = groups;
+		this.n = n;
+		for (int i = 0; i < MEMO_SIZE; i++) {
+			probabilityByHandSize.set(i, UNKNOWN);
+		}
+	}
+
+	/********************************/
+	/* Probability Functions        */
+	/********************************/
+
+	/**
+	 * See {@link MultiHyperGeo#probability(GroupSet, int)}.
+	 */
+	public double probability() {
+		return probabilityOfHand(n);
+	}
+
+	/**
+	 * The probability that every group is within its range when looking at
+	 * handSize cards instead of n.
+	 *
+	 * @throws IllegalArgumentException
+	 *             When handSize is less than any k1, or (N < handSize).
+	 */
+	public double probabilityOfHand(int handSize) throws IllegalArgumentException {
+		if (handSize < groups.maxk1() || handSize > groups.N) {
+			throw new IllegalArgumentException(
+					"The hand size must be between k1 and N. You can't have a success with fewer cards than k1, or draw more cards than are in the deck.");
+		}
+		if (handSize >= MEMO_SIZE) {
+			return MultiHyperGeo.unverifiedProbability(groups, handSize, ProbabilityEngine.AUTO, true);
+		}
+		final long known = probabilityByHandSize.get(handSize);
+		if (known != UNKNOWN) {
+			return Double.longBitsToDouble(known);
+		}
+		final double probability = MultiHyperGeo.unverifiedProbability(groups, handSize, ProbabilityEngine.AUTO, true);
+		probabilityByHandSize.set(handSize, Double.doubleToLongBits(probability));
+		return probability;
+	}
+
+	/********************************/
+	/* Probabilities with Mulligans */
+	/********************************/
+
+	/**
+	 * See {@link MultiHyperGeo#probabilityOnVancouverMullToX(GroupSet, int)}.
+	 */
+	public double probabilityOnVancouverMullToX(int X) throws IllegalArgumentException {
+		return UniHyperGeo.calculateProbabilityOnGeneralMullToX(this::probabilityOfHand, X, groups.maxk1(), true, 7);
+	}
+
+	/**
+	 * See {@link MultiHyperGeo#probabilityOnVancouverMullToXWithFree(GroupSet, int)}.
+	 */
+	public double probabilityOnVancouverMullToXWithFree(int X) throws IllegalArgumentException {
+		return 1 - ((1 - probabilityOnVancouverMullToX(X)) * (1 - probabilityOfHand(7)));
+	}
+
+	/**
+	 * See {@link MultiHyperGeo#probabilityOnParisMullToX(GroupSet, int)}.
+	 */
+	public double probabilityOnParisMullToX(int X) throws IllegalArgumentException {
+		return UniHyperGeo.calculateProbabilityOnGeneralMullToX(this::probabilityOfHand, X, groups.maxk1(), false, 7);
+	}
+
+	/**
+	 * See {@link MultiHyperGeo#probabilityOnParisMullToXWithFree(GroupSet, int)}.
+	 */
+	public double probabilityOnParisMullToXWithFree(int X) throws IllegalArgumentException {
+		return 1 - ((1 - probabilityOnParisMullToX(X)) * (1 - probabilityOfHand(7)));
+	}
+
+	/**
+	 * See {@link MultiHyperGeo#probabilityOnLondonMullToX(GroupSet, int)}.
+	 */
+	public double probabilityOnLondonMullToX(int X) throws IllegalArgumentException {
+		return UniHyperGeo.calculateProbabilityOnLondonMullToX(this::probabilityOfHand, X, groups.maxk1(), 7);
+	}
+
+	/**
+	 * See {@link MultiHyperGeo#probabilityOnLondonMullToXWithFree(GroupSet, int)}.
+	 */
+	public double probabilityOnLondonMullToXWithFree(int X) throws IllegalArgumentException {
+		return UniHyperGeo.calculateProbabilityOnLondonMullToXWithFree(this::probabilityOfHand, X, groups.maxk1(), 7);
+	}
+
+	/**
+	 * The probability of a success when London mulliganing to each X from 0 to 7,
+	 * in one call. curve[X] is the same as {@link #probabilityOnLondonMullToX(int)
+	 * probabilityOnLondonMullToX(X)}, or the version with a free mulligan.
+	 */
+	public double[] probabilityOnLondonMullCurve(boolean withFree) throws IllegalArgumentException {
+		return UniHyperGeo.calculateLondonMullCurve(this::probabilityOfHand, groups.maxk1(), 7, withFree);
+	}
+
+	/**
+	 * See {@link MultiHyperGeo#probabilityOnLondonBottomingMullToX(GroupSet, int)}.
+	 */
+	public double probabilityOnLondonBottomingMullToX(int X) throws IllegalArgumentException {
+		MultiHyperGeo.verifyMullToX(X);
+		return londonBottomingCurve(false)[X];
+	}
+
+	/**
+	 * See
+	 * {@link MultiHyperGeo#probabilityOnLondonBottomingMullToXWithFree(GroupSet, int)}.
+	 */
+	public double probabilityOnLondonBottomingMullToXWithFree(int X) throws IllegalArgumentException {
+		MultiHyperGeo.verifyMullToX(X);
+		return londonBottomingCurve(true)[X];
+	}
+
+	/**
+	 * See {@link MultiHyperGeo#londonBottomingCurve(GroupSet, boolean)}. The seven
+	 * card hands are only gone through once per query, however many times this
+	 * is called.
+	 */
+	public double[] londonBottomingCurve(boolean withFree) throws IllegalArgumentException {
+		double[] keepable = keepableHandSizes;
+		if (keepable == null) {
+			if (groups.N < 7) {
+				throw new IllegalArgumentException(
+						"N must be greater than or equal to n. You cannot look at more cards without replacement than are in the deck.");
+			}
+			keepable = MultiHyperGeo.keepableHandSizes(groups, 7);
+			keepableHandSizes = keepable;
+		}
+		return MultiHyperGeo.londonBottomingCurve(keepable, withFree);
+	}
+
+	/**
+	 * Every mulligan rule, every X, with and without a free mulligan. Shares the
+	 * probabilities this query already remembers for each hand size. See
+	 * {@link MulliganTable}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the deck has fewer than seven cards, or k1 is more than seven.
+	 */
+	public MulliganTable mulliganTable() throws IllegalArgumentException {
+		if (groups.maxk1() > MulliganTable.STARTING_HAND_SIZE || groups.N < MulliganTable.STARTING_HAND_SIZE) {
+			throw new IllegalArgumentException(
+					"The hand size must be between k1 and N. You can't have a success with fewer cards than k1, or draw more cards than are in the deck.");
+		}
+		return new MulliganTable(this::probabilityOfHand, groups.maxk1(), groups.N);
+	}
+
+	/********************************/
+	/* Stats Functions              */
+	/********************************/
+
+	/**
+	 * The average number of cards drawn from the group at index meanOf. See
+	 * {@link MultiHyperGeo#mean(GroupSet, int, int)}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If meanOf isn't an index into the groups.
+	 */
+	public double mean(int meanOf) throws IllegalArgumentException {
+		MultiHyperGeo.verifyGroupIndex(groups, meanOf);
+		return MultiHyperGeo.unverifiedMean(groups, meanOf, n);
+	}
+
+	/**
+	 * See {@link MultiHyperGeo#variance(GroupSet, int, int)}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If meanOf isn't an index into the groups.
+	 */
+	public double variance(int meanOf) throws IllegalArgumentException {
+		MultiHyperGeo.verifyGroupIndex(groups, meanOf);
+		return MultiHyperGeo.unverifiedVariance(groups, meanOf, n);
+	}
+
+	/**
+	 * See {@link MultiHyperGeo#standardDeviation(GroupSet, int, int)}.
+	 */
+	public double standardDeviation(int meanOf) throws IllegalArgumentException {
+		return Math.sqrt(variance(meanOf));
+	}
+
+	/********************************/
+	/* Accessors                    */
+	/********************************/
+
+	public GroupSet getGroups() {
+		return groups;
+	}
+
+	public int getn() {
+		return n;
+	}
+
+}
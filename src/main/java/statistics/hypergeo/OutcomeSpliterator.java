@@ -0,0 +1,251 @@
+package statistics.hypergeo;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Lazily enumerates every outcome of a multivariate draw, that is every vector k
+ * with min[i] <= k[i] <= max[i] for each group i, whose entries sum to n.
+ *
+ * Outcomes are generated depth first, and any partial vector that can no longer
+ * reach a sum of exactly n given the minimums and maximums of the groups left
+ * is never expanded. Every leaf reached is therefore a real outcome, and the
+ * work done is proportional to the number of outcomes rather than to the
+ * product of the ranges.
+ *
+ * To avoid allocating for each outcome, the same array is handed to the action
+ * every time and is overwritten by the next outcome. Callers that want to keep
+ * an outcome must copy it.
+ *
+ * Splitting divides the range of the first group which still has more than one
+ * possible value, so the halves can be traversed independently on different
+ * threads. Splitting is only supported before traversal starts.
+ */
+public class OutcomeSpliterator implements Spliterator<int[]> {
+
+	private final int[] min;
+	private final int[] max;
+	private final int n;
+
+	// minSuffix[i] is the smallest sum groups i and above can make, maxSuffix[i]
+	// the largest. Both have one extra entry of zero at the end.
+	private final int[] minSuffix;
+	private final int[] maxSuffix;
+
+	// Groups before root are fixed for this spliterator, and the value of root is
+	// limited to [rootLow, rootHigh].
+	private int root;
+	private int rootLow;
+	private int rootHigh;
+
+	// The outcome being built, and the largest value each group may still take.
+	private final int[] outcome;
+	private final int[] upper;
+
+	private boolean started = false;
+	private boolean finished = false;
+
+	/**
+	 * Creates a spliterator over every outcome with min[i] <= k[i] <= max[i] for
+	 * each group i, and a total of exactly n.
+	 *
+	 * @param min
+	 *            The minimum of each group. This array is not copied, and must not
+	 *            be changed while this or any spliterator split from it is in use.
+	 * @param max
+	 *            The maximum of each group. The same applies as for min.
+	 * @param n
+	 *            The number of items sampled.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If min and max are empty or of different lengths.
+	 */
+	public OutcomeSpliterator(int[] min, int[] max, int n) throws IllegalArgumentException {
+		if (min.length != max.length || min.length == 0) {
+			throw new IllegalArgumentException("min and max must be the same size, and contain at least one group.");
+		}
+		final int size = min.length;
+		this.min = min;
+		this.max = max;
+		this.n = n;
+		this.minSuffix = new int[size + 1];
+		this.maxSuffix = new int[size + 1];
+		for (int i = size - 1; i >= 0; i--) {
+			minSuffix[i] = minSuffix[i + 1] + min[i];
+			maxSuffix[i] = maxSuffix[i + 1] + max[i];
+		}
+		this.outcome = new int[size];
+		this.upper = new int[size];
+
+		this.root = 0;
+		this.rootLow = lowerBound(0, 0);
+		this.rootHigh = upperBound(0, 0);
+		this.finished = minSuffix[0] > n || maxSuffix[0] < n || rootLow > rootHigh;
+	}
+
+	private OutcomeSpliterator(OutcomeSpliterator parent, int rootLow, int rootHigh) {
+		this.min = parent.min;
+		this.max = parent.max;
+		this.n = parent.n;
+		this.minSuffix = parent.minSuffix;
+		this.maxSuffix = parent.maxSuffix;
+		this.outcome = new int[min.length];
+		this.upper = new int[min.length];
+		System.arraycopy(parent.outcome, 0, outcome, 0, parent.root);
+		this.root = parent.root;
+		this.rootLow = rootLow;
+		this.rootHigh = rootHigh;
+	}
+
+	/********************************/
+	/* Traversal                    */
+	/********************************/
+
+	@Override
+	public boolean tryAdvance(Consumer<? super int[]> action) {
+		if (!advance()) {
+			return false;
+		}
+		action.accept(outcome);
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super int[]> action) {
+		while (advance()) {
+			action.accept(outcome);
+		}
+	}
+
+	/**
+	 * Moves to the next outcome, which can then be read from the array returned by
+	 * {@link #current()}. This is the allocation free alternative to
+	 * {@link #tryAdvance(Consumer)} for the hot loops in this package.
+	 *
+	 * @return true if there was another outcome.
+	 */
+	boolean advance() {
+		if (finished) {
+			return false;
+		}
+		if (!started) {
+			started = true;
+			int sum = 0;
+			for (int i = 0; i < root; i++) {
+				sum += outcome[i];
+			}
+			outcome[root] = rootLow;
+			upper[root] = rootHigh;
+			descend(root + 1, sum + rootLow);
+			return true;
+		}
+
+		// Find the deepest group that can still be incremented. The last group is
+		// always determined by the others, so it's never a candidate.
+		final int last = outcome.length - 1;
+		int sum = n - outcome[last];
+		for (int i = last - 1; i >= root; i--) {
+			sum -= outcome[i];
+			if (outcome[i] < upper[i]) {
+				outcome[i]++;
+				descend(i + 1, sum + outcome[i]);
+				return true;
+			}
+		}
+		finished = true;
+		return false;
+	}
+
+	/**
+	 * The array holding the current outcome. See {@link #advance()}.
+	 */
+	int[] current() {
+		return outcome;
+	}
+
+	// Sets groups from i onwards to their smallest feasible values, given that the
+	// groups before i sum to sum.
+	private void descend(int i, int sum) {
+		final int last = outcome.length - 1;
+		for (; i < last; i++) {
+			final int low = lowerBound(i, sum);
+			outcome[i] = low;
+			upper[i] = upperBound(i, sum);
+			sum += low;
+		}
+		if (i == last) {
+			outcome[last] = n - sum;
+		}
+	}
+
+	// The smallest value group i can take such that the groups after it can still
+	// bring the total to n.
+	private int lowerBound(int i, int sum) {
+		return Math.max(min[i], n - sum - maxSuffix[i + 1]);
+	}
+
+	// The largest value group i can take such that the groups after it can still
+	// bring the total down to n.
+	private int upperBound(int i, int sum) {
+		return Math.min(max[i], n - sum - minSuffix[i + 1]);
+	}
+
+	/********************************/
+	/* Splitting                    */
+	/********************************/
+
+	@Override
+	public Spliterator<int[]> trySplit() {
+		if (started || finished) {
+			return null;
+		}
+
+		// Fix groups with only one possible value until one has a range worth
+		// splitting. The last group is determined by the rest, and can't be split.
+		final int last = outcome.length - 1;
+		while (rootLow == rootHigh) {
+			if (root >= last) {
+				return null;
+			}
+			outcome[root] = rootLow;
+			int sum = 0;
+			for (int i = 0; i <= root; i++) {
+				sum += outcome[i];
+			}
+			root++;
+			rootLow = lowerBound(root, sum);
+			rootHigh = root == last ? rootLow : upperBound(root, sum);
+		}
+
+		final int mid = (rootLow + rootHigh) >>> 1;
+		OutcomeSpliterator prefix = new OutcomeSpliterator(this, rootLow, mid);
+		rootLow = mid + 1;
+		return prefix;
+	}
+
+	/**
+	 * An upper bound on the outcomes left, the product of the sizes of the ranges
+	 * not yet fixed. Saturates at Long.MAX_VALUE.
+	 */
+	@Override
+	public long estimateSize() {
+		if (finished) {
+			return 0;
+		}
+		long estimate = rootHigh - rootLow + 1;
+		for (int i = root + 1; i < outcome.length - 1; i++) {
+			final long range = max[i] - min[i] + 1;
+			if (estimate > Long.MAX_VALUE / range) {
+				return Long.MAX_VALUE;
+			}
+			estimate *= range;
+		}
+		return estimate;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+
+}
@@ -0,0 +1,46 @@
+package statistics.hypergeo;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sums the multivariate pmf over every outcome of an {@link OutcomeSpliterator}
+ * on the {@link statistics.StatisticsPool}.
+ *
+ * While a piece still has a lot of outcomes left and the pool isn't already
+ * saturated with queued work, it splits in half and forks one side. Otherwise
+ * it sums what it has in place. Big, lopsided spaces therefore keep splitting
+ * where the work actually is, and idle threads steal what's left.
+ */
+@SuppressWarnings("serial")
+class OutcomeSumTask extends RecursiveTask<Double> {
+
+	// Pieces with fewer outcomes than this are summed rather than split.
+	private static final long LEAF_SIZE = 1 << 11;
+
+	private final int N;
+	private final int[] K;
+	private final int n;
+	private final OutcomeSpliterator outcomes;
+
+	OutcomeSumTask(int N, int[] K, int n, OutcomeSpliterator outcomes) {
+		this.N = N;
+		this.K = K;
+		this.n = n;
+		this.outcomes = outcomes;
+	}
+
+	@Override
+	protected Double compute() {
+		if (outcomes.estimateSize() > LEAF_SIZE && getSurplusQueuedTaskCount() <= 3) {
+			OutcomeSpliterator prefix = (OutcomeSpliterator) outcomes.trySplit();
+			if (prefix != null) {
+				OutcomeSumTask left = new OutcomeSumTask(N, K, n, prefix);
+				left.fork();
+				final double right = compute();
+				return right + left.join();
+			}
+		}
+		return MultiHyperGeo.sumPmf(N, K, n, outcomes);
+	}
+
+}
@@ -0,0 +1,38 @@
+package statistics.hypergeo;
+
+/**
+ * The ways {@link MultiHyperGeo} can evaluate a multivariate probability. They
+ * all give the same answer, up to rounding, but their costs grow very
+ * differently.
+ */
+public enum ProbabilityEngine {
+
+	/**
+	 * Count exactly if the deck is small enough, otherwise estimate the cost of
+	 * each floating point engine from the group list, and use the cheaper one.
+	 * This is the default.
+	 */
+	AUTO,
+
+	/**
+	 * Visit every outcome that satisfies the groups and add up their PMFs. The
+	 * cost grows with the number of outcomes, roughly the product of the sizes of
+	 * the groups' ranges, which is cheap for a few groups and explosive for many.
+	 */
+	ENUMERATION,
+
+	/**
+	 * Convolve the groups one at a time, tracking only the total drawn so far. The
+	 * cost is about (number of groups) * n^2, no matter how many outcomes there are.
+	 */
+	CONVOLUTION,
+
+	/**
+	 * Count the winning hands exactly in 64 bit integers, the same way as
+	 * {@link #CONVOLUTION}, and divide once at the end. Only possible while the
+	 * counts fit in a long, roughly decks of up to 128 cards and normal hand
+	 * sizes. Falls back to {@link #AUTO} otherwise.
+	 */
+	EXACT
+
+}
@@ -0,0 +1,72 @@
+package statistics.hypergeo;
+
+/**
+ * The outcome of a {@link MonteCarlo} simulation: an estimated probability and
+ * a 95% confidence interval around it.
+ */
+public class SimulationResult {
+
+	private final long samples;
+	private final long successes;
+	private final double lower;
+	private final double upper;
+	private final long elapsedNanos;
+
+	SimulationResult(long samples, long successes, double lower, double upper, long elapsedNanos) {
+		this.samples = samples;
+		this.successes = successes;
+		this.lower = lower;
+		this.upper = upper;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * The fraction of simulated hands that were a success.
+	 */
+	public double getProbability() {
+		return samples == 0 ? 0 : (double) successes / samples;
+	}
+
+	public long getSamples() {
+		return samples;
+	}
+
+	public long getSuccesses() {
+		return successes;
+	}
+
+	/**
+	 * The lower end of the 95% confidence interval.
+	 */
+	public double getLower() {
+		return lower;
+	}
+
+	/**
+	 * The upper end of the 95% confidence interval.
+	 */
+	public double getUpper() {
+		return upper;
+	}
+
+	/**
+	 * Half the width of the 95% confidence interval.
+	 */
+	public double getHalfWidth() {
+		return (upper - lower) / 2;
+	}
+
+	/**
+	 * How long the simulation took, in nanoseconds.
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%.4f (95%% CI %.4f - %.4f, %d samples, %d ms)", getProbability(), lower, upper, samples,
+				elapsedNanos / 1_000_000);
+	}
+
+}
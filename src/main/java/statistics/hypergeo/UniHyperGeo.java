@@ -1,6 +1,9 @@
 package statistics.hypergeo;
 
-import org.apache.commons.math3.util.CombinatoricsUtils;
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+import statistics.StatisticsPool;
 
 public class UniHyperGeo {
 
@@ -55,18 +58,194 @@ public class UniHyperGeo {
 	public static double probability(int N, int K, int n, int k1, int k2) throws IllegalArgumentException {
 
 		verifyProbabilityArgs(N, K, n, k1, k2);
+		return unverifiedProbability(N, K, n, k1, k2);
+	}
+
+	/**
+	 * The same as {@link #probability(int, int, int, int, int) probability()} for
+	 * a whole table of queries at once. Row i of the table is the query (N[i],
+	 * K[i], n[i], k1[i], k2[i]), and its probability is written to out[i].
+	 * 
+	 * Every row is checked up front in one pass. After that, rows are evaluated in
+	 * order. Whenever a row has a different N, K, or n from the row before it, the
+	 * pmf is calculated once and summed into both of its tails. Each row after
+	 * that is just a difference of two tail sums, so a grid that varies k1 and k2
+	 * fastest costs one pass over the pmf per deck, and a constant amount per row.
+	 * Large tables are split across cores.
+	 * 
+	 * Decks small enough to count exactly are summed as exact counts of hands
+	 * instead, so for those, every row is bit for bit the same as
+	 * {@link #probability(int, int, int, int, int) probability()}. Bigger decks
+	 * can differ from it in the last few bits.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the arrays aren't all the same length, or when any row would
+	 *             make {@link #probability(int, int, int, int, int) probability()}
+	 *             throw. The message says which row.
+	 */
+	public static void probability(int[] N, int[] K, int[] n, int[] k1, int[] k2, double[] out)
+			throws IllegalArgumentException {
+		probability(N, K, n, k1, k2, out, true);
+	}
+
+	/**
+	 * See {@link #probability(int[], int[], int[], int[], int[], double[])}.
+	 * 
+	 * @param multithreaded
+	 *            Whether large tables may be split across cores.
+	 */
+	public static void probability(int[] N, int[] K, int[] n, int[] k1, int[] k2, double[] out, boolean multithreaded)
+			throws IllegalArgumentException {
+		final int rows = out.length;
+		if (N.length != rows || K.length != rows || n.length != rows || k1.length != rows || k2.length != rows) {
+			throw new IllegalArgumentException(
+					"N, K, n, k1, k2, and out must be the same size. Each should have one entry for each row.");
+		}
+		long work = 0;
+		for (int i = 0; i < rows; i++) {
+			final int Ni = N[i], Ki = K[i], ni = n[i], k1i = k1[i], k2i = k2[i];
+			// All of verifyProbabilityArgs() in one test, which is all a valid row costs.
+			// Only a row that fails it goes through the real thing, to say why.
+			if ((Ni | Ki | ni | k1i | k2i) < 0 | k2i < k1i | Ni < Ki | Ni < ni | ni < k1i) {
+				try {
+					verifyProbabilityArgs(Ni, Ki, ni, k1i, k2i);
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Row " + i + ": " + e.getMessage());
+				}
+			}
+			work += ni + 1;
+		}
+
+		if (multithreaded && StatisticsPool.shouldParallelize(work)) {
+			StatisticsPool.invoke(new BatchProbabilityTask(N, K, n, k1, k2, out, 0, rows));
+		} else {
+			unverifiedProbability(N, K, n, k1, k2, out, 0, rows);
+		}
+	}
 
+	/**
+	 * Evaluates rows from (inclusive) to to (exclusive) of a table that has
+	 * already been verified.
+	 */
+	static void unverifiedProbability(int[] N, int[] K, int[] n, int[] k1, int[] k2, double[] out, int from, int to) {
+		double[] pmf = new double[0];
+		double[] tails = new double[0];
+		long[] counts = new long[0];
+		int start = from;
+		while (start < to) {
+			final int deckN = N[start], deckK = K[start], deckn = n[start];
+			int end = start + 1;
+			while (end < to && N[end] == deckN && K[end] == deckK && n[end] == deckn) {
+				end++;
+			}
+
+			final int supportMin = Math.max(0, deckn - (deckN - deckK));
+			final int supportMax = Math.min(deckn, deckK);
+
+			// Small decks are counted exactly, as they are one at a time. See
+			// ExactCounting.
+			if (deckN <= BinomialTables.EXACT_LIMIT) {
+				if (counts.length <= deckn + 1) {
+					counts = new long[deckn + 2];
+				}
+				final long hands = ExactCounting.countHands(deckN, deckK, deckn, counts);
+				if (hands > 0) {
+					for (int i = start; i < end; i++) {
+						final int low = Math.max(k1[i], supportMin);
+						final int past = Math.min(k2[i], supportMax) + 1;
+						out[i] = low >= past ? 0 : ExactCounting.divide(counts[past] - counts[low], hands);
+					}
+					start = end;
+					continue;
+				}
+			}
+
+			if (pmf.length <= deckn) {
+				pmf = new double[deckn + 1];
+				tails = new double[deckn + 2];
+			}
+			final int mode = mode(deckN, deckK, deckn);
+			fillDistribution(deckN, deckK, deckn, pmf);
+			sumTails(pmf, deckn, mode, tails);
+
+			// The chance of fewer than k successes is tails[k], plus one for k above the
+			// mode. So each row is one difference, with no branches, and only ever
+			// subtracts sums from the same tail, or adds up both tails when the range
+			// holds the mode. Small answers keep their precision, just as in
+			// unverifiedProbability(int, int, int, int, int).
+			for (int i = start; i < end; i++) {
+				final int low = Math.max(k1[i], supportMin);
+				final int past = Math.min(k2[i], supportMax) + 1;
+				final double probability = (((mode - past) >>> 31) - ((mode - low) >>> 31))
+						+ (tails[past] - tails[low]);
+				out[i] = low >= past || probability < 0 ? 0 : probability > 1 ? 1 : probability;
+			}
+			start = end;
+		}
+	}
+
+	/**
+	 * Writes the chance of fewer than k successes into tails[k] for k up to the
+	 * mode, and minus the chance of k or more for k above it, up to n + 1. Each
+	 * tail is summed from its own end, so it keeps full precision.
+	 */
+	private static void sumTails(double[] pmf, int n, int mode, double[] tails) {
+		double sum = 0;
+		for (int k = 0; k <= mode; k++) {
+			tails[k] = sum;
+			sum += pmf[k];
+		}
+		sum = 0;
+		for (int k = n + 1; k > mode; k--) {
+			tails[k] = -sum;
+			sum += pmf[k - 1];
+		}
+	}
+
+	/**
+	 * The same as {@link #probability(int, int, int, int, int) probability()}, for
+	 * callers in this package that have already verified their arguments.
+	 */
+	static double unverifiedProbability(int N, int K, int n, int k1, int k2) {
 		if (K < k1) {
 			// If there are less successes in the population than are required, then there's
 			// no way to possibly succeed.
 			return 0;
 		}
 
-		double probability = 0;
-		for (int k = k1; k <= k2; k++) {
-			probability += pmf(N, K, n, k);
+		// Only values of k between these can actually happen.
+		final int supportMin = Math.max(0, n - (N - K));
+		final int supportMax = Math.min(n, K);
+		final int low = Math.max(k1, supportMin);
+		final int high = Math.min(k2, supportMax);
+		if (low > high) {
+			return 0;
+		}
+
+		// Small decks can count hands exactly. See ExactCounting.
+		if (N <= BinomialTables.EXACT_LIMIT) {
+			final double exact = ExactCounting.probability(N, K, n, low, high);
+			if (!Double.isNaN(exact)) {
+				return exact;
+			}
+		}
+
+		// If the range covers most of the support, it's less work to add up everything
+		// outside of it and subtract from one. That's only safe when the range holds
+		// the mode though, or the answer could be lost to rounding.
+		final int mode = mode(N, K, n);
+		final int complementLength = (supportMax - supportMin) - (high - low);
+		if (complementLength < high - low + 1 && low <= mode && mode <= high) {
+			double complement = 0;
+			if (supportMin < low) {
+				complement += sumPmf(N, K, n, supportMin, low - 1);
+			}
+			if (high < supportMax) {
+				complement += sumPmf(N, K, n, high + 1, supportMax);
+			}
+			return Math.max(0, 1 - complement);
 		}
-		return probability;
+		return sumPmf(N, K, n, low, high);
 	}
 
 	/**
@@ -106,6 +285,7 @@ public class UniHyperGeo {
 		if (0 > P || P > 1) {
 			throw new IllegalArgumentException("P is a probability, and therefore must be between one and zero.");
 		}
+		verifyProbabilityArgs(N, k1, n, k1, k2);
 
 		// If we want a zero probability, we need zero.
 		if (P == 0) {
@@ -121,21 +301,160 @@ public class UniHyperGeo {
 			return (N - n) + k1;
 		}
 
-		// Otherwise, start iterating. Since as K increases the probability increases
-		// and then decreases, and the center could be anywhere, it unfortunately makes
-		// most sense just to guess and check each possible value of K in order. I wrote
-		// another function that took guesses and honed in on the correct value in
-		// log(N - k1) time, similar to the way a binary tree works, but unfortunately since
-		// the center could be anywhere, it didn't work out. This is inefficient, but
-		// also probably the best solution.
-		double currentProb = 0;
-		for (int Kguess = k1; Kguess <= N; Kguess++) {
-			currentProb = probability(N, Kguess, n, k1, k2);
-			if (currentProb >= P) {
-				return Kguess;
+		if (isAtLeast(n, k2)) {
+			// With no upper limit, the probability only goes up as K does, so we can
+			// binary search for the answer.
+			return bisect(P, N, n, k1);
+		}
+
+		// Otherwise, as K increases the probability increases and then decreases, and
+		// the peak could be anywhere. Walk K upwards, updating each term of the sum
+		// from the last one instead of starting over.
+		return sweep(new double[] { P }, N, n, k1, k2)[0];
+	}
+
+	/**
+	 * The same as {@link #inverseProbability(double, int, int, int, int)
+	 * inverseProbability()} for every probability in P at once. Use this to
+	 * build tables like "How many lands do I need to hit 80, 90, and 95 percent of
+	 * the time?", since it only walks through the values of K once for the whole
+	 * table.
+	 * 
+	 * @param P
+	 *            The required success rates (as decimals), in any order.
+	 * 
+	 * @return An array of the same length as P, holding the answer for each of
+	 *         its entries.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When any entry of P is outside of [0, 1], or for the same
+	 *             reasons as the single version.
+	 */
+	public static int[] inverseProbability(double[] P, int N, int n, int k1, int k2) throws IllegalArgumentException {
+		for (double p : P) {
+			if (0 > p || p > 1) {
+				throw new IllegalArgumentException("P is a probability, and therefore must be between one and zero.");
+			}
+		}
+		verifyProbabilityArgs(N, k1, n, k1, k2);
+
+		final int[] answers = new int[P.length];
+		if (isAtLeast(n, k2)) {
+			for (int i = 0; i < P.length; i++) {
+				if (P[i] == 1) {
+					answers[i] = (N - n) + k1;
+				} else if (P[i] > 0) {
+					answers[i] = bisect(P[i], N, n, k1);
+				}
+			}
+			return answers;
+		}
+
+		// Everything else goes through one sweep, smallest target first.
+		int targets = 0;
+		for (double p : P) {
+			if (p > 0 && p < 1) {
+				targets++;
 			}
 		}
-		return 0;
+		final double[] sorted = new double[targets];
+		final int[] index = new int[targets];
+		Integer[] order = new Integer[P.length];
+		for (int i = 0; i < P.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(P[a], P[b]));
+		int t = 0;
+		for (int i : order) {
+			if (P[i] == 1) {
+				answers[i] = (N - n) + k1;
+			} else if (P[i] > 0) {
+				sorted[t] = P[i];
+				index[t] = i;
+				t++;
+			}
+		}
+		final int[] found = sweep(sorted, N, n, k1, k2);
+		for (int i = 0; i < targets; i++) {
+			answers[index[i]] = found[i];
+		}
+		return answers;
+	}
+
+	/**
+	 * Whether a query is really just "at least k1", since you can never draw more
+	 * than n successes.
+	 */
+	private static boolean isAtLeast(int n, int k2) {
+		return k2 >= n;
+	}
+
+	/**
+	 * The smallest K for which at least k1 successes happen with probability P or
+	 * more. That probability never decreases as K increases, so a binary search
+	 * over [k1, N] finds it.
+	 */
+	private static int bisect(double P, int N, int n, int k1) {
+		int low = k1;
+		int high = N;
+		if (unverifiedProbability(N, high, n, k1, n) < P) {
+			return 0;
+		}
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (unverifiedProbability(N, mid, n, k1, n) >= P) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Walks K upwards from k1, and answers each target in P, which must be sorted
+	 * in increasing order, with the first K whose probability reaches it. Targets
+	 * that are never reached are answered with zero.
+	 * 
+	 * Each term pmf(k) of the sum is carried from one value of K to the next by
+	 * multiplying it by
+	 * 
+	 * pmf(k; K) / pmf(k; K - 1) = (K / (K - k)) * ((N - K + 1 - (n - k)) / (N - K
+	 * + 1)),
+	 * 
+	 * so each step costs one multiplication per term. Terms that are zero, either
+	 * because they weren't possible yet or because they were too small to store,
+	 * are calculated from scratch once they're possible.
+	 */
+	private static int[] sweep(double[] P, int N, int n, int k1, int k2) {
+		final int[] answers = new int[P.length];
+		final int high = Math.min(k2, n);
+		final double[] terms = new double[high - k1 + 1];
+
+		int next = 0;
+		double best = 0;
+		for (int K = k1; K <= N && next < P.length; K++) {
+			double probability = 0;
+			for (int k = k1; k <= high; k++) {
+				double term = terms[k - k1];
+				if (term != 0) {
+					term *= ((double) K * (double) (N - K + 1 - (n - k))) / ((double) (K - k) * (double) (N - K + 1));
+				}
+				if (term == 0 && k <= K && n - k <= N - K) {
+					term = Math.exp(HyperGeoMath.logPmf(N, K, n, k));
+				}
+				terms[k - k1] = term;
+				probability += term;
+			}
+
+			// Once a target is reached, it stays answered even if the probability falls
+			// off again, so only the best probability so far matters.
+			best = Math.max(best, probability);
+			while (next < P.length && P[next] <= best) {
+				answers[next++] = K;
+			}
+		}
+		return answers;
 	}
 
 	/**
@@ -170,10 +489,243 @@ public class UniHyperGeo {
 
 		verifyPMFArgs(N, K, n, k);
 
-		// Decided just to use the Apache Commons library to save time.
-		return (CombinatoricsUtils.binomialCoefficientDouble(K, k)
-				* CombinatoricsUtils.binomialCoefficientDouble(N - K, n - k))
-				/ CombinatoricsUtils.binomialCoefficientDouble(N, n);
+		// Computed in log space so that large decks can't overflow. See HyperGeoMath.
+		return Math.exp(HyperGeoMath.logPmf(N, K, n, k));
+	}
+
+	
+	/**
+	 * The probability of between k1 and k2 successes in a sample of every size
+	 * from 0 to nMax, in one pass.
+	 * 
+	 * The distribution of successes is carried from one sample size to the next
+	 * by drawing one more card. With n cards drawn and k of them successes, the
+	 * next card is a success with probability (K - k) / (N - n). So each sample
+	 * size reuses the last one's distribution, and the whole curve costs about as
+	 * much as a single {@link #distribution(int, int, int) distribution()} per
+	 * card drawn, without calculating anything from scratch.
+	 * 
+	 * @param nMax
+	 *            The largest sample size.
+	 * 
+	 * @return curve An array of length nMax + 1, where curve[n] is
+	 *         {@link #probability(int, int, int, int, int) probability(N, K, n, k1,
+	 *         k2)}, or zero where n < k1.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When (N < 0 || K < 0 || nMax < 0 || k1 < 0 || k2 < 0), (k2 < k1),
+	 *             (N < K), (N < nMax), or (nMax < k1).
+	 */
+	public static double[] probabilityBySampleSize(int N, int K, int k1, int k2, int nMax)
+			throws IllegalArgumentException {
+		verifyProbabilityArgs(N, K, nMax, k1, k2);
+		return unverifiedProbabilityBySampleSize(N, K, k1, k2, nMax);
+	}
+
+	static double[] unverifiedProbabilityBySampleSize(int N, int K, int k1, int k2, int nMax) {
+		final double[] curve = new double[nMax + 1];
+		final int kMax = Math.min(K, nMax);
+		double[] pmf = new double[kMax + 1];
+		double[] next = new double[kMax + 1];
+		pmf[0] = 1;
+		curve[0] = k1 == 0 ? 1 : 0;
+
+		for (int n = 0; n < nMax; n++) {
+			// Draw card n + 1.
+			final double remaining = N - n;
+			final int top = Math.min(n + 1, kMax);
+			for (int k = 0; k <= top; k++) {
+				final double miss = k <= n ? pmf[k] * ((N - n - K + k) / remaining) : 0;
+				final double hit = k > 0 ? pmf[k - 1] * ((K - k + 1) / remaining) : 0;
+				next[k] = Math.max(0, miss) + hit;
+			}
+			double[] swap = pmf;
+			pmf = next;
+			next = swap;
+
+			double probability = 0;
+			for (int k = k1; k <= Math.min(k2, top); k++) {
+				probability += pmf[k];
+			}
+			curve[n + 1] = Math.min(1, probability);
+		}
+		return curve;
+	}
+
+	/**
+	 * The probability of between k1 and k2 successes by each turn of a game, from
+	 * the opening hand (turn 0) through turn T. See
+	 * {@link #cardsSeenByTurn(int, boolean) cardsSeenByTurn()} for how many cards
+	 * that is.
+	 * 
+	 * @param turns
+	 *            T, the last turn.
+	 * @param onThePlay
+	 *            Whether you go first, and so skip your first draw.
+	 * 
+	 * @return curve An array of length T + 1, where curve[t] is the probability of
+	 *         a success by turn t.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When (turns < 0), the deck doesn't have enough cards to last
+	 *             until turn T, or for the same reasons as
+	 *             {@link #probability(int, int, int, int, int) probability()}.
+	 */
+	public static double[] probabilityByTurn(int N, int K, int k1, int k2, int turns, boolean onThePlay)
+			throws IllegalArgumentException {
+		if (turns < 0) {
+			throw new IllegalArgumentException("The number of turns must be greater than or equal to zero.");
+		}
+		final int nMax = cardsSeenByTurn(turns, onThePlay);
+		// Never seeing k1 cards is a curve of zeroes, but only for arguments that
+		// make sense, so that isn't a reason to skip checking them.
+		verifyProbabilityArgs(N, K, Math.max(nMax, k1), k1, k2);
+		if (nMax < k1) {
+			return new double[turns + 1];
+		}
+		return byTurn(unverifiedProbabilityBySampleSize(N, K, k1, k2, nMax), turns, onThePlay);
+	}
+
+	/**
+	 * The number of cards you've seen by turn t: a seven card opening hand on
+	 * turn 0, then one more each turn, except the first turn on the play.
+	 */
+	public static int cardsSeenByTurn(int turn, boolean onThePlay) {
+		return 7 + turn - (onThePlay && turn > 0 ? 1 : 0);
+	}
+
+	/**
+	 * Picks the entry for each turn out of a curve by sample size.
+	 */
+	static double[] byTurn(double[] bySampleSize, int turns, boolean onThePlay) {
+		final double[] curve = new double[turns + 1];
+		for (int t = 0; t <= turns; t++) {
+			curve[t] = bySampleSize[cardsSeenByTurn(t, onThePlay)];
+		}
+		return curve;
+	}
+
+	/**
+	 * Verifies the arguments of a univariate query once, and returns a handle that
+	 * can evaluate its probability, mean, variance, and mulligan variants as many
+	 * times as needed without checking them again. Probabilities calculated for
+	 * each hand size are shared between all of those.
+	 * 
+	 * @param N
+	 *            The total population size.
+	 * @param K
+	 *            The number of successes in the population.
+	 * @param n
+	 *            The number of items sampled.
+	 * @param k1
+	 *            The minimum number of observed successes required.
+	 * @param k2
+	 *            The maximum number of observed successes required.
+	 * 
+	 * @return query The verified query.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When (N < 0 || K < 0 || n < 0 || k1 < 0 || k2 < 0), (k2 < k1), (N
+	 *             < K), (N < n), or (n < k1).
+	 */
+	public static UniHyperGeoQuery compile(int N, int K, int n, int k1, int k2) throws IllegalArgumentException {
+		verifyProbabilityArgs(N, K, n, k1, k2);
+		return new UniHyperGeoQuery(N, K, n, k1, k2);
+	}
+
+	/**
+	 * The whole UniVariate Hypergeometric Probability Mass Function at once.
+	 * Entry k of the result is the same as {@link #pmf(int, int, int, int)
+	 * pmf(N, K, n, k)}, for every k from 0 to n, but the arguments are only checked
+	 * once, and only one term is calculated from scratch. The rest follow from it
+	 * by the ratio between neighbouring terms.
+	 * 
+	 * Use this for charts and tables, rather than calling pmf() once for each k.
+	 * 
+	 * @param N
+	 *            The total population size.
+	 * @param K
+	 *            The number of successes in the population.
+	 * @param n
+	 *            The number of items sampled.
+	 * 
+	 * @return pmf An array of length n + 1, where pmf[k] is the probability of
+	 *         exactly k successes. Values of k that can't happen are zero.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When (N < 0 || K < 0 || n < 0), (N < K), or (N < n).
+	 */
+	public static double[] distribution(int N, int K, int n) throws IllegalArgumentException {
+		verifyDistributionArgs(N, K, n);
+		return unverifiedDistribution(N, K, n);
+	}
+
+	/**
+	 * The whole UniVariate Hypergeometric Cumulative Distribution Function at once,
+	 * from the same single pass as {@link #distribution(int, int, int)
+	 * distribution()}.
+	 * 
+	 * Read quantiles, medians, and the like straight out of the result with
+	 * {@link #quantile(double[], double) quantile()}.
+	 * 
+	 * @return cdf An array of length n + 1, where cdf[k] is the probability of k
+	 *         or fewer successes. The last entry is always exactly one.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When (N < 0 || K < 0 || n < 0), (N < K), or (N < n).
+	 */
+	public static double[] cumulativeDistribution(int N, int K, int n) throws IllegalArgumentException {
+		verifyDistributionArgs(N, K, n);
+		return cumulate(unverifiedDistribution(N, K, n), mode(N, K, n));
+	}
+
+	static double[] unverifiedDistribution(int N, int K, int n) {
+		final double[] pmf = new double[n + 1];
+		fillDistribution(N, K, n, pmf);
+		return pmf;
+	}
+
+	/**
+	 * Writes the pmf for k from 0 to n into the start of pmf, which must have room
+	 * for it. Entries that can't happen are set to zero.
+	 */
+	static void fillDistribution(int N, int K, int n, double[] pmf) {
+		final int supportMin = Math.max(0, n - (N - K));
+		final int supportMax = Math.min(n, K);
+		final int start = mode(N, K, n);
+		pmf[start] = Math.exp(HyperGeoMath.logPmf(N, K, n, start));
+
+		// The same recurrences as sumPmf(), but every term is kept.
+		for (int k = start; k < supportMax; k++) {
+			pmf[k + 1] = pmf[k]
+					* (((double) (K - k) * (double) (n - k)) / ((double) (k + 1) * (double) (N - K - n + k + 1)));
+		}
+		for (int k = start; k > supportMin; k--) {
+			pmf[k - 1] = pmf[k]
+					* (((double) k * (double) (N - K - n + k)) / ((double) (K - k + 1) * (double) (n - k + 1)));
+		}
+		Arrays.fill(pmf, 0, supportMin, 0);
+		Arrays.fill(pmf, supportMax + 1, n + 1, 0);
+	}
+
+	/**
+	 * Adds up a pmf into a cdf. Below the mode the lower tail is summed directly,
+	 * and from the mode up, one minus the upper tail is used instead, so that
+	 * both tails keep their precision and the last entry is exactly one.
+	 */
+	static double[] cumulate(double[] pmf, int mode) {
+		final double[] cdf = new double[pmf.length];
+		double lower = 0;
+		for (int k = 0; k < mode; k++) {
+			lower += pmf[k];
+			cdf[k] = lower;
+		}
+		double upper = 0;
+		for (int k = pmf.length - 1; k >= mode; k--) {
+			cdf[k] = Math.max(0, 1 - upper);
+			upper += pmf[k];
+		}
+		return cdf;
 	}
 
 	
@@ -431,10 +983,35 @@ public class UniHyperGeo {
 	 */
 	public static double probabilityOnLondonMullToXWithFree(int N, int K, int X, int k1, int k2)
 			throws IllegalArgumentException {
-		return 1 - ((1 - probabilityOnLondonMullToX(N, K, X, k1, k2)) * (1 - probability(N, K, 7, k1, k2)));
+		return calculateProbabilityOnLondonMullToXWithFree(handSize -> probability(N, K, handSize, k1, k2), X, k1, 7);
 	}
 
 	
+	/**
+	 * Every mulligan rule, every X, with and without a free mulligan, from one
+	 * evaluation of each hand size. See {@link MulliganTable}.
+	 * 
+	 * @param N
+	 *            The total population size (the number of cards in the deck).
+	 * @param K
+	 *            The number of successes in the population (copies of a type of
+	 *            card).
+	 * @param k1
+	 *            The minimum number of observed successes required.
+	 * @param k2
+	 *            The maximum number of observed successes required.
+	 * 
+	 * @return table The probabilities for every mulligan.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When (N < 0 || K < 0 || k1 < 0 || k2 < 0), (k2 < k1), (N < K), (N
+	 *             < 7), or (7 < k1).
+	 */
+	public static MulliganTable mulliganTable(int N, int K, int k1, int k2) throws IllegalArgumentException {
+		verifyProbabilityArgs(N, K, MulliganTable.STARTING_HAND_SIZE, k1, k2);
+		return new MulliganTable(handSize -> unverifiedProbability(N, K, handSize, k1, k2), k1, N);
+	}
+
 	/********************************/
 	/* Utility Functions            */
 	/********************************/
@@ -476,6 +1053,38 @@ public class UniHyperGeo {
 	 */
 	protected static double calculateProbabilityOnGeneralMullToX(int N, int K, int X, int k1, int k2,
 			boolean withScries, int startingHandSize) throws IllegalArgumentException {
+		return calculateProbabilityOnGeneralMullToX(handSize -> probability(N, K, handSize, k1, k2), X, k1, withScries,
+				startingHandSize);
+	}
+
+	/**
+	 * The same as
+	 * {@link #calculateProbabilityOnGeneralMullToX(int, int, int, int, int, boolean, int)
+	 * calculateProbabilityOnGeneralMullToX()}, except that the probability of a
+	 * success in a hand of each size is given by a function. This lets callers
+	 * that have already calculated some of them reuse their work.
+	 * 
+	 * @param probabilityOfHand
+	 *            Gives the probability of a success when looking at a given number of
+	 *            cards.
+	 * @param X
+	 *            The number of cards in hand that you're willing to mulligan down
+	 *            to (between 0 - 7).
+	 * @param k1
+	 *            The minimum number of observed successes required.
+	 * @param withScries
+	 *            True if calculating for the Vancouver Mulligan, False for Paris.
+	 * @param startingHandSize
+	 *            The initial size of your opening hand.
+	 * 
+	 * @return probability The probability that, in all your mulligans, you draw
+	 *         between k1 and k2 of the type of card.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When (X > startingHandSize), or when probabilityOfHand throws.
+	 */
+	protected static double calculateProbabilityOnGeneralMullToX(IntToDoubleFunction probabilityOfHand, int X,
+			int k1, boolean withScries, int startingHandSize) throws IllegalArgumentException {
 
 		// This method will also throw the same IllegalArgumentExceptions that
 		// probability() will throw to verify its arguments, since this method calls
@@ -499,7 +1108,7 @@ public class UniHyperGeo {
 		// and they're looking at exactly that many cards, so just call the other
 		// function.
 		if (X == startingHandSize) {
-			return probability(N, K, startingHandSize, k1, k2);
+			return probabilityOfHand.applyAsDouble(startingHandSize);
 		}
 
 		// In these "At least one" Combinatorics problems, the probability of at least
@@ -512,12 +1121,12 @@ public class UniHyperGeo {
 		double probabilityOfFailure = 1;
 
 		// The initial opening hand
-		probabilityOfFailure *= 1 - probability(N, K, startingHandSize, k1, k2);
+		probabilityOfFailure *= 1 - probabilityOfHand.applyAsDouble(startingHandSize);
 
 		// Mulligans (with/without scries)
 		for (int mullHandSize = startingHandSize - 1; mullHandSize >= X; mullHandSize--) {
 			// If there are scries, then add one to how many cards we're looking at.
-			probabilityOfFailure *= 1 - probability(N, K, withScries ? mullHandSize + 1 : mullHandSize, k1, k2);
+			probabilityOfFailure *= 1 - probabilityOfHand.applyAsDouble(withScries ? mullHandSize + 1 : mullHandSize);
 		}
 		return 1 - probabilityOfFailure;
 	}
@@ -560,6 +1169,37 @@ public class UniHyperGeo {
 	 */
 	protected static double calculateProbabilityOnLondonMullToX(int N, int K, int X, int k1, int k2,
 			int startingHandSize) throws IllegalArgumentException {
+		return calculateProbabilityOnLondonMullToX(handSize -> probability(N, K, handSize, k1, k2), X, k1,
+				startingHandSize);
+	}
+
+	/**
+	 * The same as
+	 * {@link #calculateProbabilityOnLondonMullToX(int, int, int, int, int, int)
+	 * calculateProbabilityOnLondonMullToX()}, except that the probability of a
+	 * success in a hand of each size is given by a function, as in
+	 * {@link #calculateProbabilityOnGeneralMullToX(IntToDoubleFunction, int, int, boolean, int)
+	 * calculateProbabilityOnGeneralMullToX()}.
+	 * 
+	 * @param probabilityOfHand
+	 *            Gives the probability of a success when looking at a given number of
+	 *            cards.
+	 * @param X
+	 *            The number of cards in hand that you're willing to mulligan down
+	 *            to (between 0 - 7).
+	 * @param k1
+	 *            The minimum number of observed successes required.
+	 * @param startingHandSize
+	 *            The initial size of your opening hand.
+	 * 
+	 * @return probability The probability that, in all your mulligans, you draw
+	 *         between k1 and k2 of the type of card.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When (X > startingHandSize), or when probabilityOfHand throws.
+	 */
+	protected static double calculateProbabilityOnLondonMullToX(IntToDoubleFunction probabilityOfHand, int X, int k1,
+			int startingHandSize) throws IllegalArgumentException {
 		// This method is much like calculateProbabilityOnGeneralMullToX(), but with the
 		// London Mulligan.
 
@@ -586,24 +1226,137 @@ public class UniHyperGeo {
 		// and they're looking at exactly that many cards, so just call the other
 		// function.
 		if (X == startingHandSize) {
-			return probability(N, K, startingHandSize, k1, k2);
+			return probabilityOfHand.applyAsDouble(startingHandSize);
+		}
+
+		// With the London mulligan every attempt looks at a full starting hand, so
+		// every attempt has the same chance of failing. The initial opening hand, then
+		// all mulligans, all fail with that chance raised to the number of attempts.
+		return londonMull(probabilityOfHand.applyAsDouble(startingHandSize), startingHandSize - X + 1);
+	}
+
+	/**
+	 * The same as
+	 * {@link #calculateProbabilityOnLondonMullToX(IntToDoubleFunction, int, int, int)
+	 * calculateProbabilityOnLondonMullToX()}, but with a free mulligan, which is
+	 * just one more attempt at a full starting hand.
+	 */
+	protected static double calculateProbabilityOnLondonMullToXWithFree(IntToDoubleFunction probabilityOfHand, int X,
+			int k1, int startingHandSize) throws IllegalArgumentException {
+		if (X < k1) {
+			X = k1;
 		}
+		if (X > startingHandSize) {
+			throw new IllegalArgumentException(
+					"X cannot be greater than the starting hand size. You cannot mull down to more cards than you start with.");
+		}
+		return londonMull(probabilityOfHand.applyAsDouble(startingHandSize), startingHandSize - X + 2);
+	}
+
+	/**
+	 * The London mulligan probability for every X from 0 to startingHandSize at
+	 * once. The probability of a starting hand is only asked for once.
+	 * 
+	 * @param withFree
+	 *            Whether the first mulligan is free.
+	 * 
+	 * @return curve An array of length startingHandSize + 1, where curve[X] is the
+	 *         probability of a success when mulliganing to X. Values of X below k1
+	 *         are treated as k1, just like the single versions do.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When (k1 > startingHandSize), or when probabilityOfHand throws.
+	 */
+	protected static double[] calculateLondonMullCurve(IntToDoubleFunction probabilityOfHand, int k1,
+			int startingHandSize, boolean withFree) throws IllegalArgumentException {
+		if (k1 > startingHandSize) {
+			throw new IllegalArgumentException(
+					"X cannot be greater than the starting hand size. You cannot mull down to more cards than you start with.");
+		}
+		final double probability = probabilityOfHand.applyAsDouble(startingHandSize);
+		final double[] curve = new double[startingHandSize + 1];
+		for (int X = 0; X <= startingHandSize; X++) {
+			final int attempts = startingHandSize - Math.max(X, k1) + 1 + (withFree ? 1 : 0);
+			curve[X] = attempts == 1 ? probability : londonMull(probability, attempts);
+		}
+		return curve;
+	}
 
+	/**
+	 * The probability that at least one of some number of independent attempts
+	 * succeeds.
+	 */
+	private static double londonMull(double probability, int attempts) {
 		// In these "At least one" Combinatorics problems, the probability of at least
-		// one event occurring is the compliment of the event not occurring, which
-		// itself is the compliment of the probability of the event happening. So,
-		// instead of tracking the probability of success through the problem, we track
-		// the probability of failure.
+		// one event occurring is the compliment of the event not occurring every time.
+		return 1 - Math.pow(1 - probability, attempts);
+	}
 
-		// The initial opening hand, then all mulligans
-		double probabilityOfFailure = 1;
-		for (int i = X; i <= startingHandSize; i++) {
-			probabilityOfFailure *= 1 - probability(N, K, startingHandSize, k1, k2);
+	
+	/**
+	 * Sums the {@link #pmf(int, int, int, int) PMF} from k1 to k2 in a single pass,
+	 * without verifying arguments. Both must lie within the support, max(0, n - (N
+	 * - K)) to min(n, K).
+	 * 
+	 * Only one term is computed from scratch, the one closest to the mode. Every
+	 * other term is one multiplication away from its neighbor, by the ratio
+	 * pmf(k + 1) / pmf(k) = (K - k)(n - k) / ((k + 1)(N - K - n + k + 1)). Working
+	 * outwards from the mode, the terms only ever get smaller, so the sum can stop
+	 * as soon as they're too small to change it, and the first term can't
+	 * underflow even when the tails do.
+	 * 
+	 * @param N
+	 *            The total population size.
+	 * @param K
+	 *            The number of successes in the population.
+	 * @param n
+	 *            The number of items sampled.
+	 * @param k1
+	 *            The minimum number of observed successes required.
+	 * @param k2
+	 *            The maximum number of observed successes required.
+	 * 
+	 * @return probability The probability that between k1 and k2 successes will
+	 *         occur in n draws.
+	 */
+	protected static double sumPmf(int N, int K, int n, int k1, int k2) {
+		final int start = Math.min(Math.max(mode(N, K, n), k1), k2);
+		final double first = Math.exp(HyperGeoMath.logPmf(N, K, n, start));
+		double sum = first;
+
+		// Upwards from the start
+		double term = first;
+		for (int k = start; k < k2; k++) {
+			term *= ((double) (K - k) * (double) (n - k)) / ((double) (k + 1) * (double) (N - K - n + k + 1));
+			if (term <= sum * EPSILON) {
+				break;
+			}
+			sum += term;
 		}
 
-		return 1 - probabilityOfFailure;
+		// Downwards from the start
+		term = first;
+		for (int k = start; k > k1; k--) {
+			term *= ((double) k * (double) (N - K - n + k)) / ((double) (K - k + 1) * (double) (n - k + 1));
+			if (term <= sum * EPSILON) {
+				break;
+			}
+			sum += term;
+		}
+		return sum;
+	}
+
+	/**
+	 * The most likely number of successes, floor((n + 1)(K + 1) / (N + 2)).
+	 */
+	protected static int mode(int N, int K, int n) {
+		return (int) (((long) (n + 1) * (long) (K + 1)) / (N + 2));
 	}
 
+	// Terms smaller than this, relative to the running total, can no longer change
+	// it.
+	private static final double EPSILON = 0x1.0p-60;
+
 	
 	/********************************/
 	/* Stats Functions              */
@@ -699,6 +1452,41 @@ public class UniHyperGeo {
 	}
 
 	
+	/**
+	 * Reads a quantile out of a cdf, such as one made by
+	 * {@link #cumulativeDistribution(int, int, int) cumulativeDistribution()}.
+	 * 
+	 * @param cdf
+	 *            The cumulative probability of each number of successes.
+	 * @param q
+	 *            The quantile to find, as a decimal. 0.5 is the median.
+	 * 
+	 * @return k The smallest number of successes whose cumulative probability is
+	 *         at least q.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             When (q < 0 || q > 1), or the cdf is empty.
+	 */
+	public static int quantile(double[] cdf, double q) throws IllegalArgumentException {
+		if (0 > q || q > 1) {
+			throw new IllegalArgumentException("q is a probability, and therefore must be between one and zero.");
+		}
+		if (cdf.length == 0) {
+			throw new IllegalArgumentException("The cdf must have at least one entry.");
+		}
+		int low = 0;
+		int high = cdf.length - 1;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (cdf[mid] >= q) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
 	/********************************/
 	/* Verify Arguments             */
 	/********************************/
@@ -767,7 +1555,7 @@ public class UniHyperGeo {
 	 *             When (N < 0 || K < 0 || n < 0 || k1 < 0 || k2 < 0), (k2 < k1), (N
 	 *             < K), (N < n), or (n < k1).
 	 */
-	private static void verifyProbabilityArgs(int N, int K, int n, int k1, int k2) throws IllegalArgumentException {
+	static void verifyProbabilityArgs(int N, int K, int n, int k1, int k2) throws IllegalArgumentException {
 		if (N < 0 || K < 0 || n < 0 || k1 < 0 || k2 < 0) {
 			throw new IllegalArgumentException(
 					"All arguments must be greater than or equal to zero. Negative numbers don't make sense in this context.");
@@ -0,0 +1,203 @@
+package statistics.hypergeo;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A univariate query whose arguments have already been verified, made by
+ * {@link UniHyperGeo#compile(int, int, int, int, int) UniHyperGeo.compile()}.
+ *
+ * Asking a query for a result never checks the deck again, and every
+ * probability it calculates for a given hand size is remembered, so asking for
+ * several mulligan variants of the same deck only calculates each hand size
+ * once. Queries are immutable apart from that memory, and are safe to share
+ * between threads.
+ */
+public class UniHyperGeoQuery {
+
+	// Hand sizes up to this are remembered. That covers every mulligan.
+	private static final int MEMO_SIZE = 9;
+	private static final long UNKNOWN = Double.doubleToLongBits(Double.NaN);
+
+	private final int N, K, n, k1, k2;
+	// The bits of each remembered probability, or of NaN until it's known.
+	// Calculated without a lock, so callers never wait on each other. Two threads
+	// might both calculate the same one, but they get the same answer, so it
+	// doesn't matter whose is kept.
+	private final AtomicLongArray probabilityByHandSize = new AtomicLongArray(MEMO_SIZE);
+
+	UniHyperGeoQuery(int N, int K, int n, int k1, int k2) {
+		this.N = N;
+		this.K = K;
+		this.n = n;
+		this.k1 = k1;
+		this.k2 = k2;
+		for (int i = 0; i < MEMO_SIZE; i++) {
+			probabilityByHandSize.set(i, UNKNOWN);
+		}
+	}
+
+	/********************************/
+	/* Probability Functions        */
+	/********************************/
+
+	/**
+	 * See {@link UniHyperGeo#probability(int, int, int, int, int)}.
+	 */
+	public double probability() {
+		return probabilityOfHand(n);
+	}
+
+	/**
+	 * The probability of between k1 and k2 successes when looking at handSize
+	 * cards instead of n.
+	 *
+	 * @throws IllegalArgumentException
+	 *             When (handSize < k1), or (N < handSize).
+	 */
+	public double probabilityOfHand(int handSize) throws IllegalArgumentException {
+		if (handSize < k1 || handSize > N) {
+			throw new IllegalArgumentException(
+					"The hand size must be between k1 and N. You can't have a success with fewer cards than k1, or draw more cards than are in the deck.");
+		}
+		if (handSize >= MEMO_SIZE) {
+			return UniHyperGeo.unverifiedProbability(N, K, handSize, k1, k2);
+		}
+		final long known = probabilityByHandSize.get(handSize);
+		if (known != UNKNOWN) {
+			return Double.longBitsToDouble(known);
+		}
+		final double probability = UniHyperGeo.unverifiedProbability(N, K, handSize, k1, k2);
+		probabilityByHandSize.set(handSize, Double.doubleToLongBits(probability));
+		return probability;
+	}
+
+	/********************************/
+	/* Probabilities with Mulligans */
+	/********************************/
+
+	/**
+	 * See {@link UniHyperGeo#probabilityOnVancouverMullToX(int, int, int, int, int)}.
+	 */
+	public double probabilityOnVancouverMullToX(int X) throws IllegalArgumentException {
+		return UniHyperGeo.calculateProbabilityOnGeneralMullToX(this::probabilityOfHand, X, k1, true, 7);
+	}
+
+	/**
+	 * See
+	 * {@link UniHyperGeo#probabilityOnVancouverMullToXWithFree(int, int, int, int, int)}.
+	 */
+	public double probabilityOnVancouverMullToXWithFree(int X) throws IllegalArgumentException {
+		return 1 - ((1 - probabilityOnVancouverMullToX(X)) * (1 - probabilityOfHand(7)));
+	}
+
+	/**
+	 * See {@link UniHyperGeo#probabilityOnParisMullToX(int, int, int, int, int)}.
+	 */
+	public double probabilityOnParisMullToX(int X) throws IllegalArgumentException {
+		return UniHyperGeo.calculateProbabilityOnGeneralMullToX(this::probabilityOfHand, X, k1, false, 7);
+	}
+
+	/**
+	 * See
+	 * {@link UniHyperGeo#probabilityOnParisMullToXWithFree(int, int, int, int, int)}.
+	 */
+	public double probabilityOnParisMullToXWithFree(int X) throws IllegalArgumentException {
+		return 1 - ((1 - probabilityOnParisMullToX(X)) * (1 - probabilityOfHand(7)));
+	}
+
+	/**
+	 * See {@link UniHyperGeo#probabilityOnLondonMullToX(int, int, int, int, int)}.
+	 */
+	public double probabilityOnLondonMullToX(int X) throws IllegalArgumentException {
+		return UniHyperGeo.calculateProbabilityOnLondonMullToX(this::probabilityOfHand, X, k1, 7);
+	}
+
+	/**
+	 * See
+	 * {@link UniHyperGeo#probabilityOnLondonMullToXWithFree(int, int, int, int, int)}.
+	 */
+	public double probabilityOnLondonMullToXWithFree(int X) throws IllegalArgumentException {
+		return UniHyperGeo.calculateProbabilityOnLondonMullToXWithFree(this::probabilityOfHand, X, k1, 7);
+	}
+
+	/**
+	 * The probability of a success when London mulliganing to each X from 0 to 7,
+	 * in one call. curve[X] is the same as {@link #probabilityOnLondonMullToX(int)
+	 * probabilityOnLondonMullToX(X)}, or the version with a free mulligan.
+	 */
+	public double[] probabilityOnLondonMullCurve(boolean withFree) throws IllegalArgumentException {
+		return UniHyperGeo.calculateLondonMullCurve(this::probabilityOfHand, k1, 7, withFree);
+	}
+
+	/**
+	 * Every mulligan rule, every X, with and without a free mulligan. Shares the
+	 * probabilities this query already remembers for each hand size. See
+	 * {@link MulliganTable}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the deck has fewer than seven cards, or k1 is more than seven.
+	 */
+	public MulliganTable mulliganTable() throws IllegalArgumentException {
+		if (k1 > MulliganTable.STARTING_HAND_SIZE || N < MulliganTable.STARTING_HAND_SIZE) {
+			throw new IllegalArgumentException(
+					"The hand size must be between k1 and N. You can't have a success with fewer cards than k1, or draw more cards than are in the deck.");
+		}
+		return new MulliganTable(this::probabilityOfHand, k1, N);
+	}
+
+	/********************************/
+	/* Stats Functions              */
+	/********************************/
+
+	/**
+	 * See {@link UniHyperGeo#mean(int, int, int)}.
+	 */
+	public double mean() {
+		if (N == 0) {
+			return 0.0;
+		}
+		return (double) n * (double) K / (double) N;
+	}
+
+	/**
+	 * See {@link UniHyperGeo#variance(int, int, int)}.
+	 */
+	public double variance() {
+		if (N == 0 || N == 1) {
+			return 0.0;
+		}
+		return (double) n * K * (N - K) * (N - n) / ((double) N * N * (N - 1));
+	}
+
+	/**
+	 * See {@link UniHyperGeo#standardDeviation(int, int, int)}.
+	 */
+	public double standardDeviation() {
+		return Math.sqrt(variance());
+	}
+
+	/********************************/
+	/* Accessors                    */
+	/********************************/
+
+	public int getN() {
+		return N;
+	}
+
+	public int getK() {
+		return K;
+	}
+
+	public int getn() {
+		return n;
+	}
+
+	public int getk1() {
+		return k1;
+	}
+
+	public int getk2() {
+		return k2;
+	}
+
+}
@@ -1,20 +1,18 @@
 package statistics.hypergeo.data;
 
-import java.util.List;
-
-import statistics.hypergeo.Group;
+import statistics.hypergeo.GroupSet;
 
 public class MultivariateData extends HyperGeoData {
 	private int n;
-	private List<Group> glist;
+	private GroupSet groups;
 	
-	public MultivariateData(List<Group> glist, int n) {
-		this.glist = glist;
+	public MultivariateData(GroupSet groups, int n) {
+		this.groups = groups;
 		this.n = n;
 	}
 
-	public List<Group> getGlist() {
-		return glist;
+	public GroupSet getGroups() {
+		return groups;
 	}
 
 	public int getN() {
@@ -1,13 +1,58 @@
 package hproject;
 
 import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import bot.Command;
+import bot.CommandExecutor;
+import bot.CommandFailureException;
+import bot.CommandRegistry;
+import bot.CommandTokenizer;
+import bot.CommandTokens;
+import bot.ComputePool;
+import bot.HyperGeoCommands;
+import bot.QueryKey;
+import bot.SharedFile;
+import bot.SingleFlight;
+import bot.VirtualCommandRunner;
+import statistics.StatisticsPool;
+
+import statistics.hypergeo.BinomialTables;
+import statistics.hypergeo.Canonicalizer;
+import statistics.hypergeo.DistributionSummary;
 import statistics.hypergeo.Group;
+import statistics.hypergeo.GroupSet;
+import statistics.hypergeo.HyperGeoCache;
+import statistics.hypergeo.MonteCarlo;
+import statistics.hypergeo.MulliganRule;
+import statistics.hypergeo.MulliganTable;
 import statistics.hypergeo.MultiHyperGeo;
+import statistics.hypergeo.MultiHyperGeoQuery;
+import statistics.hypergeo.OutcomeSpliterator;
+import statistics.hypergeo.ProbabilityEngine;
+import statistics.hypergeo.SimulationResult;
 import statistics.hypergeo.UniHyperGeo;
 
 public class Tests {
@@ -28,5 +73,1053 @@ public class Tests {
 		List<Group> glist = new ArrayList<>();
 		MultiHyperGeo.probability(glist, 7); 
 	}
-	
+
+	@Test
+	public void largePoolPMF() {
+		// A 540 card cube used to overflow the binomial coefficients.
+		assertEquals(1, exactPMF(540, 180, 45, 15) / UniHyperGeo.pmf(540, 180, 45, 15), 1e-12);
+		assertEquals(1, exactPMF(5000, 1234, 700, 170) / UniHyperGeo.pmf(5000, 1234, 700, 170), 1e-12);
+
+		List<Group> glist = new ArrayList<>();
+		glist.add(new Group(180, 15, 15));
+		glist.add(new Group(360, 30, 30));
+		assertEquals(1, exactPMF(540, 180, 45, 15) / MultiHyperGeo.probability(glist, 45), 1e-12);
+
+		// Populations in the millions still work, and still sum to one.
+		assertEquals(1, UniHyperGeo.probability(3000000, 1000000, 30, 0, 30), 1e-12);
+	}
+
+	@Test
+	public void binomialTables() {
+		assertEquals(386206920L, BinomialTables.exactBinomial(60, 7));
+		assertEquals(binomial(128, 10).longValue(), BinomialTables.exactBinomial(128, 10));
+		assertEquals(-1L, BinomialTables.exactBinomial(128, 64));
+		assertEquals(0L, BinomialTables.exactBinomial(7, 8));
+		assertEquals(binomial(128, 64).doubleValue(), BinomialTables.binomial(128, 64), 0);
+
+		// Well past the initial size of the log factorial table, so that it has to grow.
+		assertEquals(1, binomial(20000, 4).doubleValue() / BinomialTables.binomial(20000, 4), 1e-10);
+	}
+
+	@Test
+	public void rangeSummation() {
+		// Compare the recurrence against summing the pmf one term at a time, on both
+		// sides of the complement shortcut.
+		int[][] queries = { { 60, 24, 7, 2, 4 }, { 99, 37, 20, 0, 18 }, { 3000, 700, 400, 0, 120 },
+				{ 3000, 700, 400, 60, 400 }, { 40, 40, 10, 10, 10 } };
+		for (int[] q : queries) {
+			double expected = 0;
+			for (int k = q[3]; k <= Math.min(q[4], q[1]); k++) {
+				expected += UniHyperGeo.pmf(q[0], q[1], q[2], k);
+			}
+			assertEquals(expected, UniHyperGeo.probability(q[0], q[1], q[2], q[3], q[4]), 1e-12);
+		}
+	}
+
+	@Test
+	public void outcomeEnumeration() {
+		// Three groups from 0 to 7 summing to 7 is the number of ways to put 7 balls
+		// into 3 bins, C(9, 2) = 36, whether or not the spliterator is split first.
+		int[] min = { 0, 0, 0 };
+		int[] max = { 7, 7, 7 };
+		Spliterator<int[]> whole = new OutcomeSpliterator(min, max, 7);
+		Spliterator<int[]> prefix = whole.trySplit();
+		int[] count = { 0 };
+		whole.forEachRemaining(o -> {
+			assertEquals(7, o[0] + o[1] + o[2]);
+			count[0]++;
+		});
+		prefix.forEachRemaining(o -> count[0]++);
+		assertEquals(36, count[0]);
+
+		// Nothing can sum to 7 here.
+		int[] tooSmall = { 1, 2, 3 };
+		assertFalse(new OutcomeSpliterator(min, tooSmall, 7).tryAdvance(o -> count[0]++));
+	}
+
+	@Test
+	public void convolutionEngine() {
+		List<Group> glist = new ArrayList<>();
+		glist.add(new Group(24, 2, 4));
+		glist.add(new Group(15, 1, 7));
+		glist.add(new Group(21, 0, 7));
+		assertEquals(MultiHyperGeo.probability(glist, 7, ProbabilityEngine.ENUMERATION),
+				MultiHyperGeo.probability(glist, 7, ProbabilityEngine.CONVOLUTION), 1e-14);
+
+		// Fifteen groups of four with no constraints but the first, which is just the
+		// univariate problem in disguise.
+		glist.clear();
+		glist.add(new Group(4, 1, 4));
+		for (int i = 1; i < 15; i++) {
+			glist.add(new Group(4, 0, 7));
+		}
+		assertEquals(UniHyperGeo.probability(60, 4, 7, 1, 4), MultiHyperGeo.probability(glist, 7), 1e-14);
+	}
+
+	@Test
+	public void groupSetMatchesGroupList() {
+		List<Group> glist = new ArrayList<>();
+		glist.add(new Group("Lands", 24, 2, 4));
+		glist.add(new Group("Creatures", 15, 1, 7));
+		glist.add(new Group("Other", 21, 0, 7));
+		GroupSet groups = new GroupSet(new int[] { 24, 15, 21 }, new int[] { 2, 1, 0 }, new int[] { 4, 7, 7 });
+
+		assertEquals(60, groups.getN());
+		assertEquals(MultiHyperGeo.probability(glist, 7), MultiHyperGeo.probability(groups, 7), 0);
+		assertEquals(MultiHyperGeo.standardDeviation(glist, glist.get(1), 7),
+				MultiHyperGeo.standardDeviation(groups, 1, 7), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidGroupSet() {
+		new GroupSet(new int[] { 24, 36 }, new int[] { 4, 0 }, new int[] { 2, 7 });
+	}
+
+	@Test
+	public void compiledQueries() {
+		List<Group> glist = new ArrayList<>();
+		glist.add(new Group(24, 2, 4));
+		glist.add(new Group(15, 1, 7));
+		glist.add(new Group(21, 0, 7));
+		MultiHyperGeoQuery query = MultiHyperGeo.compile(glist, 7);
+
+		assertEquals(MultiHyperGeo.probability(glist, 7), query.probability(), 0);
+		for (int X = 0; X <= 7; X++) {
+			assertEquals(MultiHyperGeo.probabilityOnParisMullToXWithFree(glist, X),
+					query.probabilityOnParisMullToXWithFree(X), 1e-15);
+			assertEquals(MultiHyperGeo.probabilityOnVancouverMullToX(glist, X), query.probabilityOnVancouverMullToX(X),
+					1e-15);
+		}
+		assertEquals(UniHyperGeo.probabilityOnLondonMullToX(60, 24, 5, 2, 4),
+				UniHyperGeo.compile(60, 24, 7, 2, 4).probabilityOnLondonMullToX(5), 1e-15);
+
+		assertEquals(MultiHyperGeo.mean(GroupSet.of(glist), 1, 7), query.mean(1), 1e-15);
+		for (int meanOf : new int[] { -1, 3 }) {
+			try {
+				query.variance(meanOf);
+				assertTrue(false);
+			} catch (IllegalArgumentException e) {
+				// Not a group.
+			}
+		}
+	}
+
+	@Test
+	public void inverseProbability() {
+		double[] targets = { 0.95, 0.5, 0.8, 0.9, 0.25 };
+		int[][] queries = { { 60, 7, 2, 7 }, { 60, 7, 1, 3 }, { 40, 7, 0, 1 }, { 100, 10, 3, 5 }, { 250, 8, 2, 8 } };
+		for (int[] q : queries) {
+			int[] batch = UniHyperGeo.inverseProbability(targets, q[0], q[1], q[2], q[3]);
+			for (int i = 0; i < targets.length; i++) {
+				int expected = 0;
+				for (int K = q[2]; K <= q[0]; K++) {
+					if (UniHyperGeo.probability(q[0], K, q[1], q[2], q[3]) >= targets[i]) {
+						expected = K;
+						break;
+					}
+				}
+				assertEquals(expected, UniHyperGeo.inverseProbability(targets[i], q[0], q[1], q[2], q[3]));
+				assertEquals(expected, batch[i]);
+			}
+		}
+	}
+
+	@Test
+	public void probabilityCache() {
+		HyperGeoCache cache = new HyperGeoCache(4);
+		assertEquals(UniHyperGeo.probability(60, 24, 7, 2, 4), cache.probability(60, 24, 7, 2, 4), 0);
+		assertEquals(UniHyperGeo.probability(60, 24, 7, 2, 7), cache.probability(60, 24, 7, 2, 7), 0);
+		// Anything above n means the same as n
+		assertEquals(UniHyperGeo.probability(60, 24, 7, 2, 7), cache.probability(60, 24, 7, 2, 60), 0);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+
+		List<Group> glist = new ArrayList<>();
+		glist.add(new Group(24, 2, 4));
+		glist.add(new Group(36, 0, 7));
+		assertEquals(MultiHyperGeo.probability(glist, 7), cache.probability(glist, 7), 0);
+		assertEquals(MultiHyperGeo.probability(glist, 7), cache.probability(glist, 7), 0);
+		assertEquals(2, cache.getHitCount());
+
+		for (int K = 0; K < 20; K++) {
+			cache.probability(40, K, 7, 1, 7);
+		}
+		assertTrue(cache.size() <= 4);
+		assertTrue(cache.getEvictionCount() >= 18);
+	}
+
+	@Test
+	public void cacheSharesCalculations() throws Exception {
+		HyperGeoCache cache = new HyperGeoCache(16);
+		List<Runnable> queued = new ArrayList<>();
+
+		// Two ways of asking the same question, while the first is still waiting to be
+		// calculated, share one calculation.
+		int[][] a = { { 24, 2, 4 }, { 15, 0, 7 }, { 21, 0, 60 } };
+		int[][] b = { { 36, 0, 7 }, { 24, 2, 4 } };
+		CompletableFuture<Double> first = cache.probabilityAsync(groupSet(a), 7, queued::add);
+		CompletableFuture<Double> second = cache.probabilityAsync(groupSet(b), 7, queued::add);
+		assertSame(first, second);
+		assertEquals(1, queued.size());
+		assertEquals(1, cache.getSharedCount());
+		assertFalse(first.isDone());
+		queued.get(0).run();
+		assertEquals(MultiHyperGeo.probability(groupSet(a), 7), first.get(), 0);
+		// After that, it's just a hit.
+		assertEquals(first.get(), cache.probabilityAsync(groupSet(b), 7, queued::add).get(), 0);
+		assertEquals(1, queued.size());
+
+		// Univariate queries share theirs too, even if k2 is past what can be drawn.
+		first = cache.probabilityAsync(60, 24, 7, 2, 60, queued::add);
+		assertSame(first, cache.probabilityAsync(60, 24, 7, 2, 7, queued::add));
+		assertEquals(2, queued.size());
+		queued.get(1).run();
+		assertEquals(UniHyperGeo.probability(60, 24, 7, 2, 7), first.get(), 0);
+
+		// If the executor won't take it, the caller finds out, and the next one tries
+		// again.
+		first = cache.probabilityAsync(60, 17, 7, 2, 4, r -> {
+			throw new RejectedExecutionException();
+		});
+		assertTrue(first.isCompletedExceptionally());
+		assertEquals(UniHyperGeo.probability(60, 17, 7, 2, 4),
+				cache.probabilityAsync(60, 17, 7, 2, 4, Runnable::run).get(), 0);
+
+		// Off a virtual thread, the compute pool's executor runs it in place.
+		assertEquals(UniHyperGeo.probability(40, 17, 7, 2, 4),
+				ComputePool.await(cache.probabilityAsync(40, 17, 7, 2, 4, ComputePool.executor())), 0);
+
+		// Bad arguments are still caught straight away.
+		try {
+			cache.probabilityAsync(60, 2, 7, 3, 2, queued::add);
+			assertTrue(false);
+		} catch (IllegalArgumentException e) {
+			assertEquals(2, queued.size());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void cacheStillVerifies() {
+		HyperGeoCache cache = new HyperGeoCache(16);
+		cache.probability(60, 2, 7, 3, 5);
+		cache.probability(60, 2, 7, 3, 2);
+	}
+
+	@Test
+	public void canonicalization() {
+		int[][] a = { { 24, 2, 4 }, { 15, 0, 7 }, { 21, 0, 60 } };
+		int[][] b = { { 36, 0, 7 }, { 24, 2, 4 } };
+		int[][] c = { { 10, 0, 7 }, { 24, 2, 4 }, { 11, 0, 7 }, { 15, 0, 20 } };
+		GroupSet canonical = Canonicalizer.canonicalize(groupSet(a), 7);
+		assertEquals(2, canonical.size());
+		for (int[][] groups : new int[][][] { b, c }) {
+			assertSameGroups(canonical, Canonicalizer.canonicalize(groupSet(groups), 7));
+		}
+
+		// Constrained groups are narrowed, and must stay unmerged.
+		int[][] d = { { 4, 1, 4 }, { 30, 0, 7 }, { 4, 1, 2 }, { 22, 5, 7 } };
+		assertEquals(exactProbability(d, 7), MultiHyperGeo.probability(groupSet(d), 7), 1e-14);
+		assertEquals(exactProbability(a, 7), MultiHyperGeo.probability(groupSet(c), 7), 1e-14);
+
+		assertEquals(exactProbability(d, 7),
+				MultiHyperGeo.probability(Canonicalizer.canonicalize(Canonicalizer.canonicalize(groupSet(d), 7), 7), 7),
+				1e-14);
+
+		int[][] impossible = { { 4, 3, 4 }, { 4, 3, 4 }, { 30, 0, 7 } };
+		assertEquals(null, Canonicalizer.canonicalize(groupSet(impossible), 5));
+		assertEquals(0, MultiHyperGeo.probability(groupSet(impossible), 5), 0);
+
+		// Ranges that only become redundant once narrowed. With two groups of 10
+		// and 7 cards, at least 3 from one is the same as at most 4 from the other.
+		int[][] e = { { 10, 3, 7 }, { 10, 1, 6 } };
+		int[][] f = { { 10, 1, 6 }, { 10, 3, 7 } };
+		int[][] g = { { 10, 3, 7 }, { 10, 0, 6 }, { 100, 0, 7 } };
+		int[][] h = { { 40, 0, 7 }, { 10, 0, 5 }, { 10, 2, 7 }, { 60, 0, 9 } };
+		assertSameGroups(Canonicalizer.canonicalize(groupSet(e), 7), Canonicalizer.canonicalize(groupSet(f), 7));
+		assertEquals(2, Canonicalizer.canonicalize(groupSet(g), 7).size());
+		// Canonicalizing again never changes anything, and never changes the answer.
+		for (int[][] groups : new int[][][] { a, b, c, d, e, f, g, h }) {
+			GroupSet once = Canonicalizer.canonicalize(groupSet(groups), 7);
+			assertSameGroups(once, Canonicalizer.canonicalize(once, 7));
+			int[][] onceGroups = new int[once.size()][];
+			for (int i = 0; i < once.size(); i++) {
+				onceGroups[i] = new int[] { once.getK(i), once.getk1(i), once.getk2(i) };
+			}
+			assertEquals(exactProbability(groups, 7), exactProbability(onceGroups, 7), 1e-14);
+		}
+	}
+
+	private static void assertSameGroups(GroupSet expected, GroupSet actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getK(i), actual.getK(i));
+			assertEquals(expected.getk1(i), actual.getk1(i));
+			assertEquals(expected.getk2(i), actual.getk2(i));
+		}
+	}
+
+	@Test
+	public void fullDistributions() {
+		int[][] decks = { { 60, 24, 7 }, { 40, 17, 10 }, { 1000, 400, 60 }, { 20, 18, 5 }, { 0, 0, 0 } };
+		for (int[] d : decks) {
+			double[] pmf = UniHyperGeo.distribution(d[0], d[1], d[2]);
+			double[] cdf = UniHyperGeo.cumulativeDistribution(d[0], d[1], d[2]);
+			assertEquals(d[2] + 1, pmf.length);
+			assertEquals(1, cdf[cdf.length - 1], 0);
+			for (int k = 0; k <= d[2]; k++) {
+				double expected = k <= d[1] && d[2] - k <= d[0] - d[1] ? exactPMF(d[0], d[1], d[2], k) : 0;
+				assertEquals(expected, pmf[k], Math.max(expected * 1e-12, 1e-300));
+				assertEquals(UniHyperGeo.probability(d[0], d[1], d[2], 0, k), cdf[k], 1e-13);
+			}
+		}
+		double[] cdf = UniHyperGeo.cumulativeDistribution(60, 24, 7);
+		assertEquals(3, UniHyperGeo.quantile(cdf, 0.5));
+		assertEquals(0, UniHyperGeo.quantile(cdf, 0));
+		assertEquals(7, UniHyperGeo.quantile(cdf, 1));
+
+		int[][] groups = { { 24, 2, 4 }, { 15, 1, 7 }, { 21, 0, 7 } };
+		double[] marginal = MultiHyperGeo.marginal(groupSet(groups), 0, 7);
+		assertEquals(8, marginal.length);
+		double inRange = 0;
+		for (int j = 0; j < marginal.length; j++) {
+			int[][] exact = { { 24, j, j }, { 15, 1, 7 }, { 21, 0, 7 } };
+			assertEquals(exactProbability(exact, 7), marginal[j], 1e-15);
+			if (j >= 2 && j <= 4) {
+				inRange += marginal[j];
+			}
+		}
+		assertEquals(MultiHyperGeo.probability(groupSet(groups), 7), inRange, 1e-15);
+	}
+
+	@Test
+	public void londonMulligan() {
+		List<Group> glist = new ArrayList<>();
+		glist.add(new Group(24, 2, 4));
+		glist.add(new Group(15, 1, 7));
+		glist.add(new Group(21, 0, 7));
+		MultiHyperGeoQuery query = MultiHyperGeo.compile(glist, 7);
+		double p = MultiHyperGeo.probability(glist, 7);
+		double[] curve = query.probabilityOnLondonMullCurve(false);
+		double[] curveWithFree = query.probabilityOnLondonMullCurve(true);
+		assertEquals(8, curve.length);
+		for (int X = 0; X <= 7; X++) {
+			double failure = 1;
+			for (int i = Math.max(X, 2); i <= 7; i++) {
+				failure *= 1 - p;
+			}
+			assertEquals(1 - failure, MultiHyperGeo.probabilityOnLondonMullToX(glist, X), 1e-15);
+			assertEquals(1 - failure * (1 - p), MultiHyperGeo.probabilityOnLondonMullToXWithFree(glist, X), 1e-15);
+			assertEquals(MultiHyperGeo.probabilityOnLondonMullToX(glist, X), curve[X], 0);
+			assertEquals(query.probabilityOnLondonMullToXWithFree(X), curveWithFree[X], 0);
+		}
+		assertEquals(p, curve[7], 0);
+
+		double[] uniCurve = UniHyperGeo.compile(60, 24, 7, 2, 4).probabilityOnLondonMullCurve(true);
+		for (int X = 0; X <= 7; X++) {
+			assertEquals(UniHyperGeo.probabilityOnLondonMullToXWithFree(60, 24, X, 2, 4), uniCurve[X], 0);
+		}
+	}
+
+	@Test
+	public void londonMulliganWithBottoming() {
+		int[][] groups = { { 24, 2, 4 }, { 15, 1, 7 }, { 11, 0, 7 }, { 10, 0, 1 } };
+		double[] curve = MultiHyperGeo.londonBottomingCurve(groupSet(groups), false);
+		double[] curveWithFree = MultiHyperGeo.compile(GroupSet.of(toList(groups)), 7).londonBottomingCurve(true);
+
+		// Brute force every seven card hand, and every way to bottom it
+		double[] keepable = new double[8];
+		int[] c = new int[groups.length];
+		for (c[0] = 0; c[0] <= 7; c[0]++) {
+			for (c[1] = 0; c[1] <= 7 - c[0]; c[1]++) {
+				for (c[2] = 0; c[2] <= 7 - c[0] - c[1]; c[2]++) {
+					c[3] = 7 - c[0] - c[1] - c[2];
+					int[][] hand = new int[groups.length][];
+					for (int i = 0; i < groups.length; i++) {
+						hand[i] = new int[] { groups[i][0], c[i], c[i] };
+					}
+					double p = exactProbability(hand, 7);
+					for (int h = 0; h <= 7; h++) {
+						if (canKeep(groups, c, 0, h)) {
+							keepable[h] += p;
+						}
+					}
+				}
+			}
+		}
+		double failure = 1;
+		for (int X = 7; X >= 0; X--) {
+			failure *= 1 - keepable[X];
+			assertEquals(1 - failure, curve[X], 1e-14);
+			assertEquals(1 - failure * (1 - keepable[7]), curveWithFree[X], 1e-14);
+			assertTrue(curve[X] >= MultiHyperGeo.probabilityOnLondonMullToX(groupSet(groups), X) - 1e-15);
+		}
+		assertEquals(MultiHyperGeo.probability(groupSet(groups), 7), curve[7], 1e-15);
+
+		// Compiled queries check X the same way.
+		MultiHyperGeoQuery query = MultiHyperGeo.compile(groupSet(groups), 7);
+		assertEquals(curve[5], query.probabilityOnLondonBottomingMullToX(5), 1e-15);
+		for (int X : new int[] { -1, 8 }) {
+			try {
+				query.probabilityOnLondonBottomingMullToX(X);
+				assertTrue(false);
+			} catch (IllegalArgumentException e) {
+				// Can't mulligan to that.
+			}
+			try {
+				query.probabilityOnLondonBottomingMullToXWithFree(X);
+				assertTrue(false);
+			} catch (IllegalArgumentException e) {
+				// Can't mulligan to that.
+			}
+		}
+	}
+
+	private static boolean canKeep(int[][] groups, int[] c, int from, int left) {
+		if (from == groups.length) {
+			return left == 0;
+		}
+		for (int x = groups[from][1]; x <= Math.min(c[from], Math.min(groups[from][2], left)); x++) {
+			if (canKeep(groups, c, from + 1, left - x)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<Group> toList(int[][] groups) {
+		List<Group> glist = new ArrayList<>();
+		for (int[] g : groups) {
+			glist.add(new Group(g[0], g[1], g[2]));
+		}
+		return glist;
+	}
+
+	@Test
+	public void mulliganTable() {
+		List<Group> glist = new ArrayList<>();
+		glist.add(new Group(24, 2, 4));
+		glist.add(new Group(15, 1, 7));
+		glist.add(new Group(21, 0, 7));
+		MulliganTable table = MultiHyperGeo.mulliganTable(glist);
+		for (int X = 0; X <= 7; X++) {
+			assertEquals(MultiHyperGeo.probabilityOnVancouverMullToX(glist, X),
+					table.probability(MulliganRule.VANCOUVER, false, X), 1e-15);
+			assertEquals(MultiHyperGeo.probabilityOnVancouverMullToXWithFree(glist, X),
+					table.probability(MulliganRule.VANCOUVER, true, X), 1e-15);
+			assertEquals(MultiHyperGeo.probabilityOnParisMullToX(glist, X), table.probability(MulliganRule.PARIS, false, X),
+					1e-15);
+			assertEquals(MultiHyperGeo.probabilityOnParisMullToXWithFree(glist, X),
+					table.probability(MulliganRule.PARIS, true, X), 1e-15);
+			assertEquals(MultiHyperGeo.probabilityOnLondonMullToX(glist, X), table.probability(MulliganRule.LONDON, false, X),
+					1e-15);
+			assertEquals(MultiHyperGeo.probabilityOnLondonMullToXWithFree(glist, X),
+					table.probability(MulliganRule.LONDON, true, X), 1e-15);
+		}
+		assertEquals(MultiHyperGeo.probability(glist, 8), table.probabilityOfHand(8), 1e-15);
+		assertEquals(0, table.probabilityOfHand(1), 0);
+
+		MulliganTable uniTable = UniHyperGeo.compile(60, 24, 7, 2, 4).mulliganTable();
+		for (int X = 0; X <= 7; X++) {
+			assertEquals(UniHyperGeo.probabilityOnParisMullToXWithFree(60, 24, X, 2, 4),
+					uniTable.probability(MulliganRule.PARIS, true, X), 1e-15);
+		}
+	}
+
+	@Test
+	public void drawCurves() throws CommandFailureException {
+		int[][] decks = { { 60, 24, 4, 60 }, { 40, 17, 2, 3 }, { 1000, 400, 10, 20 }, { 99, 1, 1, 1 } };
+		for (int[] d : decks) {
+			double[] curve = UniHyperGeo.probabilityBySampleSize(d[0], d[1], d[2], d[3], 30);
+			for (int n = 0; n <= 30; n++) {
+				double expected = n < d[2] ? 0 : UniHyperGeo.probability(d[0], d[1], n, d[2], d[3]);
+				assertEquals(expected, curve[n], 1e-13);
+			}
+		}
+
+		int[][] groups = { { 24, 4, 7 }, { 15, 1, 2 }, { 21, 0, 60 } };
+		int[][] large = { { 400, 4, 9 }, { 150, 1, 2 }, { 450, 0, 60 } };
+		for (int[][] g : new int[][][] { groups, large }) {
+			double[] curve = MultiHyperGeo.probabilityBySampleSize(groupSet(g), 20);
+			for (int n = 0; n <= 20; n++) {
+				double expected = n < 4 ? 0 : MultiHyperGeo.probability(groupSet(g), n, ProbabilityEngine.ENUMERATION);
+				assertEquals(expected, curve[n], 1e-13);
+			}
+		}
+
+		double[] onThePlay = MultiHyperGeo.probabilityByTurn(toList(groups), 5, true);
+		double[] onTheDraw = MultiHyperGeo.probabilityByTurn(toList(groups), 5, false);
+		assertEquals(MultiHyperGeo.probability(groupSet(groups), 7), onThePlay[0], 1e-15);
+		assertEquals(MultiHyperGeo.probability(groupSet(groups), 7), onThePlay[1], 1e-15);
+		assertEquals(MultiHyperGeo.probability(groupSet(groups), 8), onTheDraw[1], 1e-15);
+		assertEquals(MultiHyperGeo.probability(groupSet(groups), 11), onThePlay[5], 1e-15);
+		assertEquals(UniHyperGeo.probability(60, 24, 12, 4, 60), UniHyperGeo.probabilityByTurn(60, 24, 4, 60, 5, false)[5],
+				1e-13);
+
+		// In /drawcurve, a group without a range can be any number of cards, so it
+		// doesn't change the curve, even once the hand is past seven cards.
+		GroupSet parsed = HyperGeoCommands
+				.parseGroups(CommandTokenizer.tokenize("/drawcurve (Lands, 24, 4, 60), (Other Cards, 36)", "/"), true);
+		assertEquals(36, parsed.getk2(1));
+		assertArrayEquals(UniHyperGeo.probabilityByTurn(60, 24, 4, 60, 10, true),
+				MultiHyperGeo.probabilityByTurn(parsed, 10, true), 1e-13);
+
+		// Needing more cards than are ever seen is a curve of zeroes, but bad
+		// arguments still aren't.
+		assertEquals(0, UniHyperGeo.probabilityByTurn(60, 24, 20, 24, 3, true)[3], 0);
+		for (int[] bad : new int[][] { { 60, 24, 20, 10 }, { 60, 70, 20, 24 }, { 10, 10, 20, 24 } }) {
+			try {
+				UniHyperGeo.probabilityByTurn(bad[0], bad[1], bad[2], bad[3], 3, true);
+				assertTrue(false);
+			} catch (IllegalArgumentException e) {
+				// Invalid.
+			}
+		}
+	}
+
+	@Test
+	public void monteCarlo() {
+		int[][] groups = { { 24, 2, 4 }, { 15, 1, 7 }, { 21, 0, 7 } };
+		double exact = MultiHyperGeo.probability(groupSet(groups), 7);
+		SimulationResult result = MonteCarlo.simulate(groupSet(groups), 7, 0.005, 10_000_000, 42);
+		assertTrue(result.getHalfWidth() <= 0.005);
+		assertTrue(result.getSamples() < 10_000_000);
+		assertTrue(Math.abs(result.getProbability() - exact) < 2 * result.getHalfWidth());
+		assertTrue(result.getLower() <= result.getProbability() && result.getProbability() <= result.getUpper());
+
+		// The same seed gives the same answer
+		SimulationResult again = MonteCarlo.simulate(groupSet(groups), 7, 0.005, 10_000_000, 42);
+		assertEquals(result.getSuccesses(), again.getSuccesses());
+		assertEquals(result.getSamples(), again.getSamples());
+
+		// Conditions can see the order cards were drawn in
+		SimulationResult firstCard = MonteCarlo.simulate(groupSet(groups), 7, (cards, handSize, counts) -> cards[0] == 0,
+				0.01, 1_000_000, 7);
+		assertTrue(Math.abs(firstCard.getProbability() - 24.0 / 60.0) < 2 * firstCard.getHalfWidth());
+	}
+
+	@Test
+	public void batchProbability() {
+		int rows = 5000;
+		int[] N = new int[rows], K = new int[rows], n = new int[rows], k1 = new int[rows], k2 = new int[rows];
+		int row = 0;
+		for (int deck = 40; deck <= 100 && row < rows; deck += 20) {
+			for (int lands = 0; lands <= deck && row < rows; lands += 3) {
+				for (int low = 0; low <= 7 && row < rows; low++) {
+					for (int high = low; high <= 9 && row < rows; high++) {
+						N[row] = deck;
+						K[row] = lands;
+						n[row] = 7 + low;
+						k1[row] = low;
+						k2[row] = high;
+						row++;
+					}
+				}
+			}
+		}
+		for (boolean multithreaded : new boolean[] { false, true }) {
+			double[] out = new double[row];
+			UniHyperGeo.probability(Arrays.copyOf(N, row), Arrays.copyOf(K, row),
+					Arrays.copyOf(n, row), Arrays.copyOf(k1, row), Arrays.copyOf(k2, row),
+					out, multithreaded);
+			// Every deck here is small enough to count exactly, so the answers are
+			// exactly the same.
+			for (int i = 0; i < row; i++) {
+				assertEquals(UniHyperGeo.probability(N[i], K[i], n[i], k1[i], k2[i]), out[i], 0);
+			}
+		}
+
+		// Ranges in either tail of a big deck keep their precision, even when they're
+		// tiny.
+		int[][] tails = { { 250, 10, 17, 9, 10 }, { 250, 10, 17, 0, 0 }, { 250, 240, 17, 0, 3 },
+				{ 250, 125, 60, 0, 10 }, { 250, 125, 60, 50, 60 }, { 250, 125, 60, 20, 40 } };
+		double[] out = new double[tails.length];
+		UniHyperGeo.probability(column(tails, 0), column(tails, 1), column(tails, 2), column(tails, 3),
+				column(tails, 4), out);
+		for (int i = 0; i < tails.length; i++) {
+			double expected = exactProbability(new int[][] { { tails[i][1], tails[i][3], tails[i][4] },
+					{ tails[i][0] - tails[i][1], 0, tails[i][2] } }, tails[i][2]);
+			assertEquals(expected, out[i], expected * 1e-12);
+		}
+
+		try {
+			UniHyperGeo.probability(new int[] { 60, 60 }, new int[] { 24, 24 }, new int[] { 7, 7 }, new int[] { 2, 5 },
+					new int[] { 4, 4 }, new double[2]);
+			assertTrue(false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().startsWith("Row 1: "));
+		}
+	}
+
+	@Test
+	public void batchThroughput() {
+		// Every hand from 7 to 17 cards, every land count, and every range, for a 60
+		// card deck. k1 and k2 vary fastest, like a chart's grid.
+		int rows = 0;
+		int[] N = new int[30000], K = new int[N.length], n = new int[N.length], k1 = new int[N.length],
+				k2 = new int[N.length];
+		grid: for (int lands = 0; lands <= 60; lands++) {
+			for (int hand = 7; hand <= 17; hand++) {
+				for (int low = 0; low <= hand; low++) {
+					for (int high = low; high <= hand; high++) {
+						if (rows == N.length) {
+							break grid;
+						}
+						N[rows] = 60;
+						K[rows] = lands;
+						n[rows] = hand;
+						k1[rows] = low;
+						k2[rows] = high;
+						rows++;
+					}
+				}
+			}
+		}
+
+		// The best of many rounds, so that the JIT has compiled both, and the odd pause
+		// doesn't count.
+		double[] out = new double[rows];
+		double sink = 0;
+		long scalar = Long.MAX_VALUE, batch = Long.MAX_VALUE;
+		for (int round = 0; round < 300; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < rows; i++) {
+				sink += UniHyperGeo.probability(N[i], K[i], n[i], k1[i], k2[i]);
+			}
+			scalar = Math.min(scalar, System.nanoTime() - start);
+			start = System.nanoTime();
+			UniHyperGeo.probability(N, K, n, k1, k2, out, false);
+			batch = Math.min(batch, System.nanoTime() - start);
+		}
+		assertTrue(sink > 0);
+		// On one thread, a 60 card deck measures around twice as fast, since both
+		// count such small decks exactly, and the scalar API only needs a handful of
+		// multiplications to do it. Bigger decks gain more, and splitting the rows
+		// across cores multiplies it. The bound here is loose, so that a noisy
+		// machine doesn't fail it.
+		assertTrue("Batch " + batch + "ns, scalar " + scalar + "ns", 2 * scalar >= 3 * batch);
+	}
+
+	@Test
+	public void parallelEnumeration() throws InterruptedException {
+		// Five constrained groups in 250 cards, enough outcomes that enumerating them
+		// is split up on the statistics pool.
+		int[][] groups = { { 50, 2, 12 }, { 50, 2, 12 }, { 50, 2, 12 }, { 50, 2, 12 }, { 50, 2, 12 } };
+		int n = 40;
+		OutcomeSpliterator outcomes = new OutcomeSpliterator(new int[] { 2, 2, 2, 2, 2 },
+				new int[] { 12, 12, 12, 12, 12 }, n);
+		final int parallelism = StatisticsPool.getParallelism();
+		// Even on one core.
+		StatisticsPool.setParallelism(4);
+		try {
+			assertTrue(StatisticsPool.shouldParallelize(outcomes.estimateSize() * groups.length));
+			double parallel = MultiHyperGeo.probability(groupSet(groups), n, ProbabilityEngine.ENUMERATION);
+			assertEquals(MultiHyperGeo.probability(groupSet(groups), n, false), parallel, 1e-12);
+			assertEquals(exactProbability(groups, n), parallel, 1e-12);
+
+			// Called from another fork-join pool, the work still goes to the statistics
+			// pool.
+			ForkJoinPool other = new ForkJoinPool(1);
+			try {
+				String thread = other.submit(() -> StatisticsPool.invoke(new RecursiveTask<String>() {
+					@Override
+					protected String compute() {
+						return Thread.currentThread().getName();
+					}
+				})).join();
+				assertTrue(thread, thread.startsWith("statistics-"));
+			} finally {
+				other.shutdown();
+			}
+		} finally {
+			StatisticsPool.setParallelism(parallelism);
+			StatisticsPool.shutdown(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void exactCounting() {
+		// Small decks are counted exactly, so they should be the closest double to
+		// the true probability.
+		int[][][] decks = { { { 24, 2, 4 }, { 15, 1, 7 }, { 21, 0, 7 } }, { { 17, 2, 3 }, { 8, 1, 2 }, { 15, 0, 10 } },
+				{ { 37, 3, 5 }, { 12, 1, 2 }, { 10, 1, 3 }, { 40, 0, 10 } }, { { 4, 1, 1 }, { 4, 1, 1 }, { 52, 0, 7 } } };
+		int[] n = { 7, 10, 10, 7 };
+		for (int d = 0; d < decks.length; d++) {
+			double expected = exactProbability(decks[d], n[d]);
+			assertEquals(expected, MultiHyperGeo.probability(groupSet(decks[d]), n[d]), 0);
+			assertEquals(expected, MultiHyperGeo.probability(groupSet(decks[d]), n[d], ProbabilityEngine.EXACT), 0);
+		}
+		for (int K = 0; K <= 60; K += 4) {
+			int[][] uni = { { K, 2, 4 }, { 60 - K, 0, 60 } };
+			assertEquals(exactProbability(uni, 7), UniHyperGeo.probability(60, K, 7, 2, 4), 0);
+		}
+
+		// Too big to count exactly, so EXACT falls back to the other engines.
+		int[][] large = { { 400, 4, 9 }, { 150, 1, 2 }, { 450, 0, 60 } };
+		assertEquals(exactProbability(large, 20), MultiHyperGeo.probability(groupSet(large), 20, ProbabilityEngine.EXACT),
+				1e-13);
+		assertEquals(exactProbability(new int[][] { { 64, 30, 34 }, { 64, 0, 64 } }, 64),
+				UniHyperGeo.probability(128, 64, 64, 30, 34), 1e-14);
+	}
+
+	@Test
+	public void distributionSummary() {
+		GroupSet groups = groupSet(new int[][] { { 24, 0, 0 }, { 4, 0, 0 }, { 9, 0, 0 }, { 23, 0, 0 } });
+		int n = 10;
+		DistributionSummary summary = MultiHyperGeo.summary(groups, n);
+		assertEquals(4, summary.size());
+		for (int i = 0; i < summary.size(); i++) {
+			assertEquals(MultiHyperGeo.mean(groups, i, n), summary.getMean(i), 1e-12);
+			assertEquals(MultiHyperGeo.variance(groups, i, n), summary.getVariance(i), 1e-12);
+			assertEquals(summary.getVariance(i), summary.getCovariance(i, i), 0);
+			// The counts always add up to n, so each row of the covariance matrix sums
+			// to zero.
+			double row = 0;
+			for (int j = 0; j < summary.size(); j++) {
+				row += summary.getCovariance(i, j);
+				assertEquals(summary.getCovariance(i, j), summary.getCovariance(j, i), 0);
+				if (i != j) {
+					// Two groups together are one bigger group, so
+					// Var(Xi + Xj) = Var(Xi) + Var(Xj) + 2 Cov(Xi, Xj).
+					int K = groups.getK(i) + groups.getK(j);
+					assertEquals(UniHyperGeo.variance(60, K, n),
+							summary.getVariance(i) + summary.getVariance(j) + 2 * summary.getCovariance(i, j), 1e-12);
+					assertTrue(summary.getCorrelation(i, j) < 0 && summary.getCorrelation(i, j) > -1);
+				}
+			}
+			assertEquals(0, row, 1e-12);
+		}
+	}
+
+	@Test
+	public void commandExecutor() throws InterruptedException {
+		CommandExecutor executor = new CommandExecutor(1, 4, 2);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+		// Hold the only worker, so everything else has to wait.
+		assertTrue(executor.submit(1, () -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}));
+		started.await();
+
+		assertTrue(executor.submit(1, () -> order.add("a1")));
+		assertTrue(executor.submit(1, () -> order.add("a2")));
+		// The first server's lane is full.
+		assertFalse(executor.submit(1, () -> order.add("a3")));
+		assertTrue(executor.submit(2, () -> order.add("b1")));
+		assertTrue(executor.submit(2, () -> order.add("b2")));
+		// Everything is full.
+		assertFalse(executor.submit(3, () -> order.add("c1")));
+		assertEquals(4, executor.getWaiting());
+
+		release.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		// The servers take turns, and each one's commands stay in order.
+		assertEquals(Arrays.asList("a1", "b1", "a2", "b2"), order);
+		assertFalse(executor.submit(1, () -> order.add("a4")));
+
+		// A command that throws an Error doesn't take its worker with it.
+		executor = new CommandExecutor(1, 4, 4);
+		CountDownLatch survived = new CountDownLatch(1);
+		assertTrue(executor.submit(1, () -> {
+			throw new StackOverflowError("Thrown on purpose by the test.");
+		}));
+		assertTrue(executor.submit(1, survived::countDown));
+		assertTrue(survived.await(5, TimeUnit.SECONDS));
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void virtualCommandRunner() throws Exception {
+		// Off a virtual thread, computations just run in place, and keep their
+		// exceptions.
+		assertEquals(Thread.currentThread(), ComputePool.compute(() -> Thread.currentThread()));
+		try {
+			ComputePool.compute(() -> {
+				throw new CommandFailureException("bad input");
+			});
+			assertTrue(false);
+		} catch (CommandFailureException e) {
+			assertEquals("bad input", e.getMessage());
+		}
+
+		if (!VirtualCommandRunner.isSupported()) {
+			try {
+				new VirtualCommandRunner();
+				assertTrue(false);
+			} catch (UnsupportedOperationException e) {
+				// Before Java 21, MainRunner falls back to a CommandExecutor.
+			}
+			return;
+		}
+
+		// Far more commands in progress than there are threads to compute on.
+		final int commands = 1000;
+		VirtualCommandRunner runner = new VirtualCommandRunner(commands);
+		CountDownLatch waiting = new CountDownLatch(commands);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> computedOn = Collections.synchronizedList(new ArrayList<>());
+		for (int i = 0; i < commands; i++) {
+			assertTrue(runner.submit(i, () -> {
+				waiting.countDown();
+				try {
+					release.await();
+					computedOn.add(ComputePool.compute(() -> Thread.currentThread().getName()));
+				} catch (InterruptedException | CommandFailureException e) {
+					throw new RuntimeException(e);
+				}
+			}));
+		}
+		waiting.await();
+		// Every command is blocked, so there's no room for another.
+		assertEquals(commands, runner.getInProgress());
+		assertFalse(runner.submit(0, () -> {
+		}));
+		release.countDown();
+		runner.shutdown();
+		assertTrue(runner.awaitTermination(30, TimeUnit.SECONDS));
+		assertEquals(commands, computedOn.size());
+		for (String name : computedOn) {
+			assertTrue(name.startsWith("compute-"));
+		}
+	}
+
+	@Test
+	public void commandTokenizer() {
+		assertNull(CommandTokenizer.tokenize("hello /prob", "/"));
+		assertNull(CommandTokenizer.tokenize("   ", "/"));
+		assertNull(CommandTokenizer.tokenize("/ prob", "/"));
+
+		CommandTokens uni = CommandTokenizer.tokenize("  /Prob  60, 24,2 , 4, 7  ", "/");
+		assertEquals("prob", uni.getName());
+		assertEquals("60, 24,2 , 4, 7", uni.getText());
+		assertFalse(uni.hasError());
+		assertEquals(0, uni.getGroupCount());
+		assertEquals(5, uni.getNumberCount());
+		int[] expected = { 60, 24, 2, 4, 7 };
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], uni.getNumber(i));
+		}
+		assertEquals(9, uni.getNumberPosition(0));
+
+		// Names are decided by the number of fields, so they can look like numbers.
+		CommandTokens multi = CommandTokenizer.tokenize("/p (Lands, 24, 2, 4), (2 Drops, 8),(28), ( 7 , 1, 1 ), (7, 3),7",
+				"/");
+		assertFalse(multi.hasError());
+		assertEquals(5, multi.getGroupCount());
+		String[] names = { "Lands", "2 Drops", null, null, "7" };
+		int[][] values = { { 24, 2, 4 }, { 8 }, { 28 }, { 7, 1, 1 }, { 3 } };
+		for (int g = 0; g < names.length; g++) {
+			assertEquals(names[g], multi.getGroupName(g));
+			assertEquals(values[g].length, multi.getGroupValueCount(g));
+			for (int i = 0; i < values[g].length; i++) {
+				assertEquals(values[g][i], multi.getGroupValue(g, i));
+			}
+		}
+		assertEquals(3, multi.getGroupPosition(0));
+		assertEquals(1, multi.getNumberCount());
+		assertEquals(7, multi.getNumber(0));
+
+		StringBuilder many = new StringBuilder("/p ");
+		for (int g = 0; g < 20; g++) {
+			many.append("(G").append(g).append(", ").append(g).append("), ");
+		}
+		many.append("-3");
+		CommandTokens grown = CommandTokenizer.tokenize(many.toString(), "/");
+		assertEquals(20, grown.getGroupCount());
+		assertEquals("G19", grown.getGroupName(19));
+		assertEquals(19, grown.getGroupValue(19, 0));
+		assertEquals(-3, grown.getNumber(0));
+
+		// Errors say where they are, instead of throwing.
+		String[] bad = { "/prob 60, 24, x, 4, 7", "/prob (Lands, 24, 2, 4", "/prob 7, (24)", "/prob (a, b, c)",
+				"/prob 99999999999", "/prob (Lands)", "/prob 60, 24,", "/prob (1, 2, 3, 4, 5)", "/prob (24) 7" };
+		int[] positions = { 14, 6, 9, 10, 6, 7, 13, 6, 11 };
+		for (int i = 0; i < bad.length; i++) {
+			CommandTokens tokens = CommandTokenizer.tokenize(bad[i], "/");
+			assertTrue(bad[i], tokens.hasError());
+			assertEquals(bad[i], positions[i], tokens.getErrorPosition());
+			assertTrue(tokens.describeError().contains(bad[i] + "\n" + repeat(' ', positions[i]) + "^"));
+		}
+		// Commands that take text don't care.
+		CommandTokens text = CommandTokenizer.tokenize("/snowflake Some Name", "/");
+		assertTrue(text.hasError());
+		assertEquals("Some Name", text.getText());
+	}
+
+	@Test
+	public void commandRegistry() {
+		Command prob = (event, args) -> {
+		};
+		Command probHelp = (event, args) -> {
+		};
+		Command list = (event, args) -> {
+		};
+		CommandRegistry.Builder builder = new CommandRegistry.Builder("/").add(prob, probHelp, "p", "prob")
+				.add(list, "commandlist");
+		CommandRegistry registry = builder.build();
+
+		assertSame(prob, registry.find("p"));
+		assertSame(prob, registry.find("prob"));
+		// Help is found by the suffix, for every alias, without being registered.
+		assertSame(probHelp, registry.find("phelp"));
+		assertSame(probHelp, registry.find("probhelp"));
+		assertEquals(3, registry.getNames().size());
+		assertNull(registry.find("help"));
+		assertNull(registry.find("commandlisthelp"));
+		assertNull(registry.find("probability"));
+
+		// Adding to the builder afterwards doesn't change the registry.
+		builder.add(list, "probability");
+		assertNull(registry.find("probability"));
+		try {
+			builder.add(list, "prob");
+			assertTrue(false);
+		} catch (IllegalArgumentException e) {
+			// Already taken.
+		}
+
+		assertTrue(registry.couldBeCommand("/prob 60, 24, 2, 4, 7"));
+		assertTrue(registry.couldBeCommand("  /Commandlist"));
+		assertFalse(registry.couldBeCommand("good game everyone"));
+		assertFalse(registry.couldBeCommand("/shrug"));
+		assertFalse(registry.couldBeCommand("/"));
+		assertFalse(registry.couldBeCommand(""));
+	}
+
+	@Test
+	public void singleFlight() throws Exception {
+		SingleFlight<QueryKey, SharedFile> charts = new SingleFlight<>(SharedFile::share);
+		File file = File.createTempFile("chart", ".png");
+		AtomicInteger draws = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		final int callers = 4;
+		List<SharedFile> results = Collections.synchronizedList(new ArrayList<>());
+
+		Thread[] threads = new Thread[callers];
+		for (int i = 0; i < callers; i++) {
+			threads[i] = new Thread(() -> {
+				try {
+					// Every caller makes its own key, but they're all equal.
+					results.add(charts.run(new QueryKey("probchart", new String[] { "Lands" }, 24, 7), () -> {
+						draws.incrementAndGet();
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							throw new CommandFailureException("interrupted");
+						}
+						return new SharedFile(file);
+					}));
+				} catch (CommandFailureException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			threads[i].start();
+		}
+		// Hold the first caller's chart until everyone else is waiting on it.
+		while (charts.getSharedCount() < callers - 1) {
+			Thread.sleep(1);
+		}
+		release.countDown();
+		for (Thread thread : threads) {
+			thread.join(5000);
+		}
+
+		assertEquals(1, draws.get());
+		assertEquals(callers, results.size());
+		for (SharedFile result : results) {
+			assertSame(results.get(0), result);
+		}
+		assertEquals(0, charts.getInFlight());
+		// Only the last one to finish with the file deletes it.
+		assertEquals(callers, results.get(0).getUsers());
+		for (int i = 0; i < callers - 1; i++) {
+			results.get(i).release();
+			assertTrue(file.exists());
+		}
+		results.get(callers - 1).release();
+		assertFalse(file.exists());
+
+		// Failures reach the caller, and aren't remembered.
+		SingleFlight<QueryKey, Double> probabilities = new SingleFlight<>();
+		QueryKey key = new QueryKey("prob univariate", null, 60, 24, 7, 2, 4);
+		try {
+			probabilities.run(key, () -> {
+				throw new CommandFailureException("bad input");
+			});
+			assertTrue(false);
+		} catch (CommandFailureException e) {
+			assertEquals("bad input", e.getMessage());
+		}
+		assertEquals(0.5, probabilities.run(key, () -> 0.5), 0);
+		assertFalse(key.equals(new QueryKey("prob univariate", null, 60, 24, 7, 2, 5)));
+		assertFalse(key.equals(new QueryKey("prob", null, 60, 24, 7, 2, 4)));
+	}
+
+	private static int[] column(int[][] table, int column) {
+		int[] values = new int[table.length];
+		for (int i = 0; i < table.length; i++) {
+			values[i] = table[i][column];
+		}
+		return values;
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	private static GroupSet groupSet(int[][] groups) {
+		int[] K = new int[groups.length], k1 = new int[groups.length], k2 = new int[groups.length];
+		for (int i = 0; i < groups.length; i++) {
+			K[i] = groups[i][0];
+			k1[i] = groups[i][1];
+			k2[i] = groups[i][2];
+		}
+		return new GroupSet(K, k1, k2);
+	}
+
+	// Sums every outcome by brute force, with exact arithmetic.
+	private static double exactProbability(int[][] groups, int n) {
+		int N = 0;
+		for (int[] g : groups) {
+			N += g[0];
+		}
+		BigInteger favorable = exactCount(groups, 0, n);
+		return new BigDecimal(favorable).divide(new BigDecimal(binomial(N, n)), MathContext.DECIMAL128).doubleValue();
+	}
+
+	private static BigInteger exactCount(int[][] groups, int from, int remaining) {
+		if (from == groups.length) {
+			return remaining == 0 ? BigInteger.ONE : BigInteger.ZERO;
+		}
+		BigInteger count = BigInteger.ZERO;
+		for (int k = groups[from][1]; k <= Math.min(groups[from][2], Math.min(groups[from][0], remaining)); k++) {
+			count = count.add(binomial(groups[from][0], k).multiply(exactCount(groups, from + 1, remaining - k)));
+		}
+		return count;
+	}
+
+	private static BigInteger binomial(int n, int k) {
+		BigInteger b = BigInteger.ONE;
+		for (int i = 1; i <= k; i++) {
+			b = b.multiply(BigInteger.valueOf(n - k + i)).divide(BigInteger.valueOf(i));
+		}
+		return b;
+	}
+
+	private static double exactPMF(int N, int K, int n, int k) {
+		return new BigDecimal(binomial(K, k).multiply(binomial(N - K, n - k)))
+				.divide(new BigDecimal(binomial(N, n)), MathContext.DECIMAL128).doubleValue();
+	}
+
 }